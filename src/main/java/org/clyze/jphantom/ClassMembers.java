@@ -9,20 +9,61 @@ import org.clyze.jphantom.hier.closure.*;
 import org.clyze.jphantom.exc.PhantomLookupException;
 import org.clyze.jphantom.fields.FieldSignature;
 import org.clyze.jphantom.methods.MethodSignature;
+import org.clyze.jphantom.util.LongHashMap;
 import org.objectweb.asm.*;
+import org.objectweb.asm.tree.ClassNode;
 
 public class ClassMembers implements Opcodes, Types
 {
     private final Map<Type,Record> records = new HashMap<>();
     private final ClassHierarchy hierarchy;
+    private final ClassHierarchy.Snapshot closure;
     private final Random rand = new Random(System.currentTimeMillis());
+    private final StringPool names = new StringPool();
+    private final StringPool descs = new StringPool();
 
     private ClassMembers(ClassHierarchy hierarchy) {
         this.hierarchy = hierarchy;
+        this.closure = new MemoizingSnapshot(hierarchy);
     }
 
     public FieldSignature lookupField(Type clazz, String fieldName)
     throws PhantomLookupException
+    {
+        return findField(clazz, fieldName).get();
+    }
+
+    public FieldSignature lookupStaticField(Type clazz, String fieldName)
+    throws PhantomLookupException
+    {
+        return findStaticField(clazz, fieldName).get();
+    }
+
+    public MethodSignature lookupMethod(Type clazz, String methodName, String methodDesc) 
+    throws PhantomLookupException
+    {
+        return findMethod(clazz, methodName, methodDesc).get();
+    }
+
+    public MethodSignature lookupInterfaceMethod(Type clazz, String methodName, String methodDesc) 
+    throws PhantomLookupException
+    {
+        return findInterfaceMethod(clazz, methodName, methodDesc).get();
+    }
+
+    /**
+     * Records a library type, whose members will be loaded from the
+     * library on the first lookup that reaches it.
+     */
+    public void addLibraryType(Type clazz)
+    {
+        if (!records.containsKey(clazz))
+            records.put(clazz, new Record(clazz, LibraryClassHierarchy.getInstance()));
+    }
+
+    // Exception-free lookups
+
+    public Lookup<FieldSignature> findField(Type clazz, String fieldName)
     {
         if (!records.containsKey(clazz))
             throw new IllegalArgumentException("" + clazz);
@@ -30,8 +71,7 @@ public class ClassMembers implements Opcodes, Types
         return records.get(clazz).lookupField(fieldName);
     }
 
-    public FieldSignature lookupStaticField(Type clazz, String fieldName)
-    throws PhantomLookupException
+    public Lookup<FieldSignature> findStaticField(Type clazz, String fieldName)
     {
         if (!records.containsKey(clazz))
             throw new IllegalArgumentException("" + clazz);
@@ -39,9 +79,7 @@ public class ClassMembers implements Opcodes, Types
         return records.get(clazz).lookupSField(fieldName);
     }
 
-
-    public MethodSignature lookupMethod(Type clazz, String methodName, String methodDesc) 
-    throws PhantomLookupException
+    public Lookup<MethodSignature> findMethod(Type clazz, String methodName, String methodDesc)
     {
         if (!records.containsKey(clazz))
             throw new IllegalArgumentException(clazz + " not contained in key set");
@@ -49,8 +87,7 @@ public class ClassMembers implements Opcodes, Types
         return records.get(clazz).lookupMethod(methodName, methodDesc);
     }
 
-    public MethodSignature lookupInterfaceMethod(Type clazz, String methodName, String methodDesc) 
-    throws PhantomLookupException
+    public Lookup<MethodSignature> findInterfaceMethod(Type clazz, String methodName, String methodDesc)
     {
         if (!records.containsKey(clazz))
             throw new IllegalArgumentException(clazz + " not contained in key set");
@@ -58,17 +95,161 @@ public class ClassMembers implements Opcodes, Types
         return records.get(clazz).lookupIMethod(methodName, methodDesc);
     }
 
+    /**
+     * The result of a member lookup. It either holds the member found
+     * (or {@code null}, if there is none), or the phantom supertype
+     * that the lookup could not proceed past, which is where a
+     * missing member should be added.
+     */
+    public static final class Lookup<S>
+    {
+        private static final Lookup<?> NOT_FOUND = new Lookup<>(null, null);
+
+        private final S member;
+        private final Type phantom;
+
+        private Lookup(S member, Type phantom) {
+            this.member = member;
+            this.phantom = phantom;
+        }
+
+        static <S> Lookup<S> found(S member) {
+            return new Lookup<>(member, null);
+        }
+
+        @SuppressWarnings("unchecked")
+        static <S> Lookup<S> notFound() {
+            return (Lookup<S>) NOT_FOUND;
+        }
+
+        static <S> Lookup<S> blockedBy(Type phantom) {
+            return new Lookup<>(null, phantom);
+        }
+
+        public boolean isBlocked() {
+            return phantom != null;
+        }
+
+        /**
+         * Returns the phantom supertype that blocked the lookup, or
+         * {@code null} if the lookup completed.
+         */
+        public Type getPhantom() {
+            return phantom;
+        }
+
+        /**
+         * Returns the member found, or {@code null} if the lookup
+         * either found none or was blocked.
+         */
+        public S getMember() {
+            return member;
+        }
+
+        /**
+         * Returns the member found, or {@code null} if there is none.
+         *
+         * @throws PhantomLookupException if the lookup was blocked
+         */
+        public S get() throws PhantomLookupException
+        {
+            if (phantom != null)
+                throw new PhantomLookupException(phantom);
+            return member;
+        }
+    }
+
+    ////////////// Member Keys //////////////
+
+    // Kinds of lookups, as cached by each record
+    private static final int FIELD = 0;
+    private static final int STATIC_FIELD = 1;
+    private static final int METHOD = 2;
+    private static final int INTERFACE_METHOD = 3;
+
+    // Interns strings to dense ids, so that every distinct member
+    // name and descriptor is kept only once
+    private static class StringPool
+    {
+        private final Map<String,Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int intern(String s)
+        {
+            Integer id = ids.get(s);
+
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return strings.get(id);
+        }
+    }
+
+    // A member key packs the ids of its name and descriptor
+    private long memberKey(String name, String desc)
+    {
+        int nameId = names.intern(name);
+        int descId = (desc == null) ? 0 : descs.intern(desc);
+
+        assert nameId < (1 << 29);
+
+        return ((long) nameId << 32) | descId;
+    }
+
+    // A lookup key also packs the kind of lookup in its top bits
+    private static long lookupKey(int kind, long memberKey) {
+        return ((long) kind << 61) | memberKey;
+    }
+
     private class Record {
         private final Type type;
         private final Map<String,FieldSignature> fields = new HashMap<>();
-        private final Map<String,MethodSignature> methods = new HashMap<>();
+        private final LongHashMap<MethodSignature> methods = new LongHashMap<>();
+
+        // Completed lookups, by lookup key; created on demand
+        private LongHashMap<Lookup<?>> resolved;
+
+        // The library to load the members from, until they are loaded
+        private LibraryClassHierarchy library;
 
         public Record(Type type) {
+            this(type, null);
+        }
+
+        public Record(Type type, LibraryClassHierarchy library) {
             this.type = type;
+            this.library = library;
+        }
+
+        private void load()
+        {
+            if (library == null)
+                return;
+
+            LibraryClassHierarchy source = library;
+            library = null;
+
+            try {
+                source.accept(type, new Feeder(this), ClassReader.SKIP_CODE);
+            } catch (IOException exc) {
+                throw new RuntimeException("Could not load members of: " + type, exc);
+            }
+        }
+
+        private Map<String,FieldSignature> fields() {
+            load();
+            return fields;
         }
 
-        private String mkey(String name, String desc) {
-            return name + "::" + desc;
+        private LongHashMap<MethodSignature> methods() {
+            load();
+            return methods;
         }
 
         protected void addField(String name, FieldSignature sign) {
@@ -76,16 +257,38 @@ public class ClassMembers implements Opcodes, Types
         }
 
         protected void addMethod(String name, MethodSignature sign) {
-            methods.put(mkey(name, sign.getDescriptor()), sign);
+            methods.put(memberKey(name, sign.getDescriptor()), sign);
         }
 
-        public FieldSignature lookupField(String name) throws PhantomLookupException
+        // A lookup is cached once it has completed; a blocked lookup
+        // may proceed further as more supertypes get added
+        @SuppressWarnings("unchecked")
+        private <S> Lookup<S> cached(long key) {
+            return (resolved == null) ? null : (Lookup<S>) resolved.get(key);
+        }
+
+        private <S> Lookup<S> remember(long key, Lookup<S> lookup)
         {
+            if (resolved == null)
+                resolved = new LongHashMap<>();
+
+            resolved.put(key, lookup);
+            return lookup;
+        }
+
+        public Lookup<FieldSignature> lookupField(String name)
+        {
+            long key = lookupKey(FIELD, memberKey(name, null));
             Record rec = this;
 
             while (rec != null) {
-                if (rec.fields.containsKey(name))
-                    return rec.fields.get(name);
+                Lookup<FieldSignature> lookup = rec.cached(key);
+
+                if (lookup != null)
+                    return remember(key, lookup);
+
+                if (rec.fields().containsKey(name))
+                    return remember(key, Lookup.found(rec.fields().get(name)));
 
                 Type sc = hierarchy.getSuperclass(rec.type);
 
@@ -95,28 +298,27 @@ public class ClassMembers implements Opcodes, Types
                 }
 
                 if (!hierarchy.contains(sc))
-                    throw new PhantomLookupException(sc);
+                    return Lookup.blockedBy(sc);
 
                 rec = records.get(sc);
             }
-            return null;
+            return remember(key, Lookup.<FieldSignature>notFound());
         }
 
 
-        private FieldSignature lookupSField(String name) throws PhantomLookupException
+        private Lookup<FieldSignature> lookupSField(String name)
         {
-            Collection<Type> ifaces;
+            long key = lookupKey(STATIC_FIELD, memberKey(name, null));
+            Lookup<FieldSignature> lookup = cached(key);
 
-            try {
-                ifaces = new PseudoSnapshot(hierarchy).getAllSupertypes(type);
-            } catch (IncompleteSupertypesException exc) {
-                ifaces = exc.getSupertypes();
-            }
+            if (lookup != null)
+                return lookup;
 
             List<Type> phantoms = new LinkedList<>();
+            SupertypeQuery query = closure.querySupertypes(type);
 
             // Check existing super-interfaces
-            for (Type iface : ifaces) {
+            for (Type iface : query.getSupertypes()) {
                 // Add to phantoms
                 if (!hierarchy.contains(iface)) {
                     phantoms.add(iface);
@@ -125,21 +327,24 @@ public class ClassMembers implements Opcodes, Types
                 Record rec = records.get(iface);
                 assert rec != null;
 
-                if (rec.fields.containsKey(name))
-                    return rec.fields.get(name);
+                if (rec.fields().containsKey(name)) {
+                    lookup = Lookup.found(rec.fields().get(name));
+
+                    // The first match may change as more supertypes get added
+                    return query.isComplete() ? remember(key, lookup) : lookup;
+                }
             }
 
             // Randomize the remaining supertypes order
             Collections.shuffle(phantoms, rand);
 
             if (!phantoms.isEmpty())
-                throw new PhantomLookupException(phantoms.get(0));
+                return Lookup.blockedBy(phantoms.get(0));
 
-            return null;
+            return remember(key, Lookup.<FieldSignature>notFound());
         }
 
-        public MethodSignature lookupMethod(String name, String desc)
-        throws PhantomLookupException
+        public Lookup<MethodSignature> lookupMethod(String name, String desc)
         {
             Record rec = this;
 
@@ -147,12 +352,20 @@ public class ClassMembers implements Opcodes, Types
             if (hierarchy.isInterface(rec.type))
                 return lookupIMethod(name, desc);
 
+            long mkey = memberKey(name, desc);
+            long key = lookupKey(METHOD, mkey);
+
             // For classes look only in superclasses
             while (true) {
-                String key = mkey(name, desc);
+                Lookup<MethodSignature> lookup = rec.cached(key);
+
+                if (lookup != null)
+                    return remember(key, lookup);
+
+                MethodSignature sign = rec.methods().get(mkey);
 
-                if (rec.methods.containsKey(key))
-                    return rec.methods.get(key);
+                if (sign != null)
+                    return remember(key, Lookup.found(sign));
 
                 Type sc = hierarchy.getSuperclass(rec.type);
 
@@ -162,32 +375,29 @@ public class ClassMembers implements Opcodes, Types
                 }
 
                 if (!hierarchy.contains(sc))
-                    throw new PhantomLookupException(sc);
+                    return Lookup.blockedBy(sc);
 
                 rec = records.get(sc);
                 assert rec != null : "Missing record for: " + sc;
             }
-            return null;
+            return remember(key, Lookup.<MethodSignature>notFound());
         }
 
-        private MethodSignature lookupIMethod(String name, String desc)
-        throws PhantomLookupException
+        private Lookup<MethodSignature> lookupIMethod(String name, String desc)
         {
-            Collection<Type> ifaces;
-            String key = mkey(name, desc);
+            long mkey = memberKey(name, desc);
+            long key = lookupKey(INTERFACE_METHOD, mkey);
+            Lookup<MethodSignature> lookup = cached(key);
 
-            try {
-                // Include OBJECT, since we may be searching for
-                // one of its methods
-                ifaces = new PseudoSnapshot(hierarchy).getAllSupertypes(type);
-            } catch (IncompleteSupertypesException exc) {
-                ifaces = exc.getSupertypes();
-            }
+            if (lookup != null)
+                return lookup;
 
             List<Type> phantoms = new LinkedList<>();
+            SupertypeQuery query = closure.querySupertypes(type);
 
-            // Check existing super-interfaces
-            for (Type iface : ifaces) {
+            // Check existing super-interfaces (including OBJECT, since
+            // we may be searching for one of its methods)
+            for (Type iface : query.getSupertypes()) {
                 // Add to phantoms
                 if (!hierarchy.contains(iface)) {
                     phantoms.add(iface);
@@ -196,17 +406,23 @@ public class ClassMembers implements Opcodes, Types
                 Record rec = records.get(iface);
                 assert rec != null;
 
-                if (rec.methods.containsKey(key))
-                    return rec.methods.get(key);
+                MethodSignature sign = rec.methods().get(mkey);
+
+                if (sign != null) {
+                    lookup = Lookup.found(sign);
+
+                    // The first match may change as more supertypes get added
+                    return query.isComplete() ? remember(key, lookup) : lookup;
+                }
             }
 
             // Randomize the remaining supertypes order
             Collections.shuffle(phantoms, rand);
 
             if (!phantoms.isEmpty())
-                throw new PhantomLookupException(phantoms.get(0));
+                return Lookup.blockedBy(phantoms.get(0));
 
-            return null;
+            return remember(key, Lookup.<MethodSignature>notFound());
         }
     }
 
@@ -214,14 +430,23 @@ public class ClassMembers implements Opcodes, Types
 
     public class Feeder extends ClassVisitor implements Opcodes
     {
-        private Type clazz;
+        // The record to fill in, if it already exists
+        private final Record target;
+        private Record record;
+
+        private Feeder(Record target) {
+            super(Options.ASM_VER);
+            this.target = target;
+        }
 
         public Feeder(int api, ClassVisitor cv) {
             super(api, cv);
+            this.target = null;
         }
 
         public Feeder(int api) {
             super(api);
+            this.target = null;
         }
 
         public Feeder(ClassVisitor cv) {
@@ -240,8 +465,10 @@ public class ClassMembers implements Opcodes, Types
                           String superName,
                           String[] interfaces)
         {
-            clazz = Type.getObjectType(name);
-            records.put(clazz, new Record(clazz));
+            Type clazz = Type.getObjectType(name);
+
+            record = (target != null) ? target : new Record(clazz);
+            records.put(clazz, record);
             super.visit(version, access, name, signature, superName, interfaces);
         }
 
@@ -249,10 +476,14 @@ public class ClassMembers implements Opcodes, Types
         public MethodVisitor visitMethod(int access, String name, String desc, 
                                          String signature, String[] exceptions)
         {
-            MethodSignature sign = new MethodSignature.Builder(name, desc)
+            // Share a single instance of each name and descriptor
+            long key = memberKey(name, desc);
+
+            MethodSignature sign = new MethodSignature.Builder(
+                names.get((int) (key >>> 32)), descs.get((int) key))
                 .access(access).exceptions(exceptions).build();
 
-            records.get(clazz).addMethod(name, sign);
+            record.addMethod(name, sign);
             return super.visitMethod(access, name, desc, signature, exceptions);
         }
 
@@ -260,10 +491,15 @@ public class ClassMembers implements Opcodes, Types
         public FieldVisitor visitField(int access, String name, String desc, 
                                          String signature, Object value)
         {
-            FieldSignature sign = new FieldSignature.Builder(name, desc)
+            // Share a single instance of each name and descriptor
+            long key = memberKey(name, desc);
+            String fieldName = names.get((int) (key >>> 32));
+
+            FieldSignature sign = new FieldSignature.Builder(
+                fieldName, descs.get((int) key))
                 .access(access).build();
 
-            records.get(clazz).addField(name, sign);
+            record.addField(fieldName, sign);
             return super.visitField(access, name, desc, signature, value);
         }
     }
@@ -275,12 +511,27 @@ public class ClassMembers implements Opcodes, Types
         return fromJar(new JarFile(jarname), hierarchy);
     }
 
+    public static ClassMembers fromClassNodes(Iterable<ClassNode> nodes, ClassHierarchy hierarchy)
+        throws IOException
+    {
+        ClassMembers repo = new ClassMembers(hierarchy);
+
+        repo.addLibraryType(OBJECT);
+
+        // Method bodies are not replayed, since the feeder
+        // does not return any method visitors
+        for (ClassNode node : nodes)
+            node.accept(repo.new Feeder());
+
+        return repo;
+    }
+
     public static ClassMembers fromJar(JarFile file, ClassHierarchy hierarchy) throws IOException
     {
         try {
             ClassMembers repo = new ClassMembers(hierarchy);
 
-            new ClassReader(OBJECT.getInternalName()).accept(repo.new Feeder(), 0);
+            repo.addLibraryType(OBJECT);
 
             for (Enumeration<JarEntry> e = file.entries(); e.hasMoreElements();)
             {
@@ -1,10 +1,17 @@
 package org.clyze.jphantom;
 
 import org.clyze.jphantom.adapters.ClassPhantomExtractor;
+import org.clyze.jphantom.classpath.ClassSources;
 import org.clyze.jphantom.hier.ClassHierarchies;
 import org.clyze.jphantom.hier.ClassHierarchy;
-import org.clyze.jphantom.hier.UnmodifiableClassHierarchy;
+import org.clyze.jphantom.hier.LibraryClassHierarchy;
+import org.clyze.jphantom.hier.closure.MemoizingSnapshot;
 import org.clyze.jphantom.jar.JarExtender;
+import org.clyze.jphantom.jar.ClassNodeProvider;
+import org.clyze.jphantom.jar.InMemoryNodeProvider;
+import org.clyze.jphantom.jar.JarLoader;
+import org.clyze.jphantom.jar.StreamingNodeProvider;
+import org.clyze.jphantom.jar.TypeReferenceIndex;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.objectweb.asm.ClassReader;
@@ -19,13 +26,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
 
 public class Driver implements Types
 {
@@ -34,67 +37,93 @@ public class Driver implements Types
     protected final static Logger logger =
             LoggerFactory.getLogger(Driver.class);
 
+    private final ClassNodeProvider nodes;
     private final JPhantom phantom;
     private final File outDir;
 
     /* Constructors */
     
-    public Driver(Path jar, Path dir) throws IOException {
-        this(jar.toString(), dir.toFile());
-    }
-
-    public Driver(String jarname, File outDir) throws IOException
+    public Driver(Path jar, Path dir) throws IOException
     {
-        this.outDir = outDir;
+        this.outDir = dir.toFile();
 
-        ClassHierarchy hierarchy = ClassHierarchies.fromJar(jarname);
-        ClassMembers members = ClassMembers.fromJar(jarname, hierarchy);
+        JarLoader loader = new JarLoader(jar, Options.V().getThreads());
+        ClassHierarchy hierarchy;
+        ClassMembers members;
 
-        // Create Jar Input Stream
+        if (Options.V().isStreaming())
+        {
+            // Parse just the declarations of every class for now;
+            // their code will be read again, one class at a time
 
-        JarInputStream jin = new JarInputStream(new FileInputStream(jarname));
-        JarEntry entry;
-        JarFile jarFile = new JarFile(jarname);
-        Map<Type, ClassNode> nodes = new HashMap<>();
-        try {
-            /* List all JAR entries */
-            while ((entry = jin.getNextJarEntry()) != null)
-            {
-                /* Skip directories */
-                if (entry.isDirectory())
-                    continue;
-
-                /* Skip non-class files */
-                if(!entry.getName().endsWith(".class"))
-                    continue;
-
-                logger.trace("Reading jar entry: {}", entry.getName());
-                ClassReader reader = new ClassReader(jarFile.getInputStream(entry));
-                reader.accept(new ClassPhantomExtractor(hierarchy, members), 0);
-
-                // At this point, every phantom class has been extracted.
-                // Moreover, our class hierarchy has been augmented so
-                // that it contains all the library classes that are 
-                // referenced in the jar.
-                
-                ClassNode node = new ClassNode();
-                reader.accept(node, 0);
-                nodes.put(Type.getObjectType(node.name), node);
+            Map<Type, ClassNode> skeletons = loader.load(ClassReader.SKIP_CODE);
+
+            hierarchy = ClassHierarchies.fromClassNodes(skeletons.values());
+            members = ClassMembers.fromClassNodes(skeletons.values(), hierarchy);
+            nodes = new StreamingNodeProvider(jar, loader.getEntryNames());
+        }
+        else
+        {
+            // Parse every class entry just once; the nodes are
+            // shared by all of the following stages
+
+            Map<Type, ClassNode> parsed = loader.load();
+
+            hierarchy = ClassHierarchies.fromClassNodes(parsed.values());
+            members = ClassMembers.fromClassNodes(parsed.values(), hierarchy);
+            nodes = new InMemoryNodeProvider(parsed);
+        }
+
+        // Classes whose referenced types are all known, along with
+        // their supertypes, cannot refer to any phantoms. Since the
+        // hierarchy grows as library types get imported, this is
+        // checked right before each class would be visited.
+
+        TypeReferenceIndex references = loader.getReferenceIndex();
+        TypeReferenceIndex.Checker checker =
+            references.checker(hierarchy, LibraryClassHierarchy.getInstance());
+        int skipped = 0;
+
+        // Supertypes are memoized across classes
+        ClassHierarchy.Snapshot closure = new MemoizingSnapshot(hierarchy);
+
+        for (Type t : nodes.getTypes())
+        {
+            if (checker.isResolved(t)) {
+                skipped++;
+                continue;
             }
-        } finally {
-            jarFile.close();
-            jin.close();
+
+            logger.trace("Extracting phantoms from: {}", t.getInternalName());
+            nodes.accept(t, new ClassPhantomExtractor(hierarchy, closure, members), 0);
         }
 
-        phantom = new JPhantom(nodes, hierarchy, members);
+        logger.info("Skipped phantom extraction for {} of {} classes",
+                    skipped, nodes.getTypes().size());
+
+        // At this point, every phantom class has been extracted.
+        // Moreover, our class hierarchy has been augmented so
+        // that it contains all the library classes that are 
+        // referenced in the jar.
+
+        phantom = new JPhantom(nodes, hierarchy, members, references);
     }
-    
+
+    public Driver(String jarname, File outDir) throws IOException {
+        this(new File(jarname).toPath(), outDir.toPath());
+    }
+
 
     /* Methods */
 
     public void run() throws IOException {
         // Generate phantom classes
-        phantom.run();
+        try {
+            phantom.run();
+        } finally {
+            if (nodes instanceof Closeable)
+                ((Closeable) nodes).close();
+        }
 
         // Write generated classes to output directory
         generateFiles(outDir);
@@ -198,6 +227,21 @@ public class Driver implements Types
         deleteDirectory(classdir); // remove old contents
         Files.createDirectories(classdir);
 
+        // Resolve library types against the target JDK, and use
+        // a precomputed index, if requested
+        LibraryClassHierarchy library = LibraryClassHierarchy.getInstance();
+
+        if (bean.getJdk() != null)
+            library = LibraryClassHierarchy.forJdk(bean.getJdk(), bean.getJdkIndexDir());
+        else if (bean.getJdkIndexDir() != null)
+            library = LibraryClassHierarchy.indexed(bean.getJdkIndexDir());
+
+        // Dependencies are resolved after the JDK
+        if (bean.getClasspath() != null)
+            library = library.extend(ClassSources.forClasspath(bean.getClasspath()));
+
+        LibraryClassHierarchy.setInstance(library);
+
         new Driver(injar, classdir).run();
 
         logger.info("Creating complemented jar: " + outjar);
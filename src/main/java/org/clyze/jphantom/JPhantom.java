@@ -9,13 +9,17 @@ import org.clyze.jphantom.constraints.extractors.TypeConstraintExtractor;
 import org.clyze.jphantom.constraints.solvers.*;
 import org.clyze.jphantom.hier.ClassHierarchies;
 import org.clyze.jphantom.hier.ClassHierarchy;
+import org.clyze.jphantom.hier.LibraryClassHierarchy;
 import org.clyze.jphantom.hier.PrintableClassHierarchy;
 import org.clyze.jphantom.hier.UnmodifiableClassHierarchy;
+import org.clyze.jphantom.hier.closure.CopyingSnapshot;
+import org.clyze.jphantom.jar.ClassNodeProvider;
+import org.clyze.jphantom.jar.InMemoryNodeProvider;
+import org.clyze.jphantom.jar.TypeReferenceIndex;
 import org.clyze.jphantom.methods.MethodDeclarations;
 import org.clyze.jphantom.methods.MethodSignature;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
@@ -25,20 +29,47 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class JPhantom {
     protected final static Logger logger =
             LoggerFactory.getLogger(Driver.class);
     private final Phantoms phantoms = Phantoms.V();
-    private final Map<Type, ClassNode> nodes;
+    private final ClassNodeProvider nodes;
+    private final TypeReferenceIndex references;
     private final ClassHierarchy hierarchy;
     private final ClassMembers members;
     private Map<Type, byte[]> generated;
 
     public JPhantom(Map<Type, ClassNode> nodes, ClassHierarchy hierarchy, ClassMembers members) {
+        this(new InMemoryNodeProvider(nodes), hierarchy, members);
+    }
+
+    public JPhantom(ClassNodeProvider nodes, ClassHierarchy hierarchy, ClassMembers members) {
+        this(nodes, hierarchy, members, null);
+    }
+
+    /**
+     * @param references the types referenced by each input class,
+     *        used to skip classes that cannot contribute any
+     *        constraints; may be {@code null}
+     */
+    public JPhantom(ClassNodeProvider nodes,
+                    ClassHierarchy hierarchy,
+                    ClassMembers members,
+                    TypeReferenceIndex references)
+    {
         this.nodes = nodes;
+        this.references = references;
         this.hierarchy = new UnmodifiableClassHierarchy(hierarchy);
         this.members = members;
 
@@ -58,24 +89,44 @@ public class JPhantom {
 
     public void run() throws IOException
     {
+        // The hierarchy no longer changes; freeze it, so that it can
+        // be read by all of the following stages concurrently
+        ClassHierarchy frozen = ClassHierarchies.freeze(hierarchy);
+
         // Analyze
 
         TypeConstraintSolver solver =
                 new ConstraintStoringSolver(
-                        new BasicSolver.Builder().hierarchy(hierarchy).build());
+                        new BasicSolver.Builder()
+                        .hierarchy(frozen)
+                        .threads(Options.V().getThreads())
+                        .build());
 
         // Prune unrelated types before feeding them to the solver
         solver = new PruningSolver(solver);
 
-        TypeConstraintExtractor extractor = new TypeConstraintExtractor(solver);
+        // Classes that reference neither phantom types nor types
+        // with phantom supertypes cannot contribute any constraints
+        TypeReferenceIndex.Checker checker =
+            (references == null) ? null :
+            references.checker(frozen, LibraryClassHierarchy.getInstance());
+        List<Type> pending = new ArrayList<>();
 
-        for (ClassNode node : nodes.values()) {
-            try {
-                extractor.visit(node);
-            } catch (AnalyzerException e) {
-                throw new RuntimeException(e);
-            }
-        }
+        for (Type t : nodes.getTypes())
+            if (checker == null || !checker.isResolved(t))
+                pending.add(t);
+
+        // Supertypes are computed once, and shared by every extractor
+        ClassHierarchy.Snapshot closure = new CopyingSnapshot(frozen);
+
+        int threads = Math.min(Options.V().getThreads(), pending.size());
+        int skippedMethods = (threads > 1) ?
+            extractConstraints(solver, closure, pending, threads) :
+            extractConstraints(solver, closure, pending);
+
+        logger.info("Skipped constraint extraction for {} of {} classes",
+                    nodes.getTypes().size() - pending.size(), nodes.getTypes().size());
+        logger.info("Skipped frame analysis for {} methods", skippedMethods);
 
         // Additional constraints
         for (Constraint c : FieldAccessStateMachine.v().getConstraints())
@@ -102,34 +153,134 @@ public class JPhantom {
         // Add supertypes
         addSupertypes(solution);
 
-        // Generate files
-        generated = phantoms.generateClasses();
-
         // Load required class methods of the types that comprise our solution
         fillLookupTable(solution);
 
         // Add missing methods
         addMissingMethods(solution, new MethodDeclarations(solution, phantoms.getLookupTable()));
+
+        // Generate files, in a single pass per phantom class
+        generated = phantoms.generateClasses();
+    }
+
+    private int extractConstraints(
+        TypeConstraintSolver solver, ClassHierarchy.Snapshot closure, List<Type> types)
+        throws IOException
+    {
+        TypeConstraintExtractor extractor = new TypeConstraintExtractor(solver, closure);
+
+        // Each node is dropped right after its analysis, unless
+        // the provider keeps it around anyway
+        for (Type t : types) {
+            try {
+                extractor.visit(nodes.getNode(t));
+            } catch (AnalyzerException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return extractor.getSkippedMethods();
+    }
+
+    private int extractConstraints(
+        final TypeConstraintSolver solver,
+        final ClassHierarchy.Snapshot closure,
+        final List<Type> types,
+        int threads)
+        throws IOException
+    {
+        logger.debug("Extracting constraints of {} classes using {} threads",
+                     types.size(), threads);
+
+        // Each worker owns an extractor, and buffers the constraints of
+        // every class it claims. The buffers are replayed afterwards in
+        // class order, so that the solver receives exactly the same
+        // constraints as in a sequential run. A failure is stored in
+        // place of its class's constraints, and rethrown during replay.
+
+        final Object[] results = new Object[types.size()];
+        final AtomicInteger next = new AtomicInteger();
+        List<Callable<Integer>> workers = new ArrayList<>(threads);
+
+        for (int w = 0; w < threads; w++)
+        {
+            workers.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call()
+                    {
+                        BufferingSolver buffer = new BufferingSolver(solver);
+                        TypeConstraintExtractor extractor =
+                            new TypeConstraintExtractor(buffer, closure);
+                        int i;
+
+                        while ((i = next.getAndIncrement()) < types.size())
+                        {
+                            try {
+                                extractor.visit(nodes.getNode(types.get(i)));
+                                results[i] = buffer.drain();
+                            } catch (Exception | Error e) {
+                                buffer.drain();
+                                results[i] = e;
+                            }
+                        }
+                        return extractor.getSkippedMethods();
+                    }
+                });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int skippedMethods = 0;
+
+        try {
+            for (Future<Integer> future : pool.invokeAll(workers))
+                skippedMethods += future.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exc) {
+            throw new IllegalStateException(exc.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Object result : results)
+        {
+            if (result instanceof AnalyzerException)
+                throw new RuntimeException((AnalyzerException) result);
+            if (result instanceof IOException)
+                throw (IOException) result;
+            if (result instanceof RuntimeException)
+                throw (RuntimeException) result;
+            if (result instanceof Error)
+                throw (Error) result;
+
+            @SuppressWarnings("unchecked")
+            List<Constraint> constraints = (List<Constraint>) result;
+
+            BufferingSolver.replay(constraints, solver);
+        }
+        return skippedMethods;
     }
 
     private void fillLookupTable(ClassHierarchy solution) throws IOException
     {
         for (Type t : solution)
         {
+            ClassVisitor visitor = phantoms.getLookupTable().new CachingAdapter();
+
             // Phantom Type
-            if (phantoms.contains(t))
+            if (phantoms.contains(t)) {
+                phantoms.getPhantomClass(t).accept(visitor);
                 continue;
-
-            ClassVisitor visitor = phantoms.getLookupTable().new CachingAdapter();
+            }
 
             // Input Type
-            if (nodes.containsKey(t)) {
-                nodes.get(t).accept(visitor);
+            if (nodes.getTypes().contains(t)) {
+                nodes.accept(t, visitor, ClassReader.SKIP_CODE);
                 continue;
             }
 
             // Library Type
-            new ClassReader(t.getInternalName()).accept(visitor, 0);
+            LibraryClassHierarchy.getInstance().accept(t, visitor, ClassReader.SKIP_CODE);
         }
     }
 
@@ -142,20 +293,19 @@ public class JPhantom {
 
             assert phantoms.contains(p) : p;
 
-            // Get top class visitor
-            Transformer tr = phantoms.getTransformer(p);
+            // Get the model of the phantom class
+            PhantomClass pc = phantoms.getPhantomClass(p);
 
-            assert tr.top != null;
+            // Set its superclass / interface flag
 
-            // Chain a superclass / interface adapter
+            if (solution.isInterface(p))
+                pc.setInterface();
+            else
+                pc.setSuperclass(solution.getSuperclass(p));
 
-            tr.top = solution.isInterface(p) ?
-                    new InterfaceTransformer(tr.top) :
-                    new SuperclassAdapter(tr.top, solution.getSuperclass(p));
+            // Set its interfaces
 
-            // Chain an interface adder
-
-            tr.top = new InterfaceAdder(tr.top, solution.getInterfaces(p));
+            pc.setInterfaces(solution.getInterfaces(p));
         }
     }
 
@@ -172,19 +322,12 @@ public class JPhantom {
             if (pending.isEmpty())
                 continue;
 
+            PhantomClass pc = phantoms.getPhantomClass(p);
+
             for (MethodSignature m : pending)
             {
                 logger.debug("Adding method {} to \"{}\"", m, p.getClassName());
-
-                // Chain a method-adder adapter
-
-                ClassWriter cw = new ClassWriter(0);
-                ClassVisitor cv = new MethodAdder(cw, m);
-
-                ClassReader cr = new ClassReader(generated.get(p));
-                cr.accept(cv, 0);
-
-                generated.put(p, cw.toByteArray());
+                pc.addMissingMethod(m);
             }
         }
     }
@@ -14,7 +14,7 @@ public class Options {
     private final static Logger logger = (Logger) LoggerFactory.getLogger("jphantom");
     private final static Level[] levels = {OFF, ERROR, WARN, INFO, DEBUG, TRACE, ALL};
     private final static Options INSTANCE = new Options();
-    public static final int ASM_VER = Opcodes.ASM8;
+    public static final int ASM_VER = Opcodes.ASM9;
 
     public static Options V() {
         return INSTANCE;
@@ -44,6 +44,29 @@ public class Options {
     @Option(name = "--save-class-files", usage = "Save phantom class files")
     private boolean saveClasses = false;
 
+    @Option(name = "--threads",
+            usage = "Number of threads used to parse the jar, extract constraints and solve them",
+            handler = ThreadCountOptionHandler.class)
+    private int threads = 1;
+
+    @Option(name = "--streaming",
+            usage = "Read classes from the jar on demand, instead of keeping them in memory")
+    private boolean streaming = false;
+
+    @Option(name = "--classpath", aliases = {"-cp"}, metaVar = "<classpath>",
+            usage = "Dependency jars and directories, consulted before declaring a type phantom")
+    private String classpath = null;
+
+    @Option(name = "--jdk",
+            usage = "JDK to resolve library types against (home, jmods directory or rt.jar)",
+            handler = PathOptionHandler.class)
+    private Path jdk = null;
+
+    @Option(name = "--jdk-index",
+            usage = "Directory of precomputed JDK indices (built on first use)",
+            handler = DirectoryOptionHandler.class)
+    private Path jdkIndexDir = null;
+
     @Option(name = "--help", usage = "Help")
     private boolean help = false;
 
@@ -69,6 +92,26 @@ public class Options {
         return target;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public String getClasspath() {
+        return classpath;
+    }
+
+    public Path getJdk() {
+        return jdk;
+    }
+
+    public Path getJdkIndexDir() {
+        return jdkIndexDir;
+    }
+
     public boolean getHelp() {
         return help;
     }
@@ -89,6 +132,11 @@ public class Options {
         builder.append("  Logging Level: ").append(logLevel).append('\n');
         builder.append("  Source Jar File: ").append(source).append('\n');
         builder.append("  Target Jar File: ").append(target).append('\n');
+        builder.append("  Threads: ").append(threads).append('\n');
+        builder.append("  Streaming: ").append(streaming).append('\n');
+        builder.append("  Classpath: ").append(classpath).append('\n');
+        builder.append("  JDK: ").append(jdk).append('\n');
+        builder.append("  JDK Index Directory: ").append(jdkIndexDir).append('\n');
 
         return builder.toString();
     }
@@ -178,4 +226,33 @@ public class Options {
             return "N";
         }
     }
+
+    public static class ThreadCountOptionHandler extends OptionHandler<Integer>
+    {
+        public ThreadCountOptionHandler(CmdLineParser parser, OptionDef option, Setter<? super Integer> setter) {
+            super(parser, option, setter);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public int parseArguments(Parameters params) throws CmdLineException {
+            try {
+                int n = Integer.parseInt(params.getParameter(0));
+
+                if (n < 1)
+                    throw new CmdLineException(
+                        owner, "thread count must be positive: " + n);
+
+                setter.addValue(n);
+            } catch (NumberFormatException exc) {
+                throw new CmdLineException(owner, exc);
+            }
+            return 1;
+        }
+
+        @Override
+        public String getDefaultMetaVariable() {
+            return "N";
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package org.clyze.jphantom;
+
+import java.util.*;
+import org.clyze.jphantom.methods.MethodSignature;
+import org.clyze.jphantom.fields.FieldSignature;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.util.CheckClassAdapter;
+
+/**
+ * The model of a phantom class: its access flags, supertypes, fields
+ * and methods. It is filled in as the phantom is discovered, and is
+ * only turned into bytecode at the end, in a single pass.
+ *
+ * A phantom starts out as a public class that extends
+ * {@code java.lang.Object} and has no members. When a member is added
+ * more than once, its most recent access flags are kept, and it is
+ * moved before any member added in the meantime. Missing methods,
+ * inherited from supertypes, are placed after all other methods.
+ */
+public class PhantomClass implements Opcodes, Types
+{
+    private static final int options =
+        ClassWriter.COMPUTE_MAXS |
+        ClassWriter.COMPUTE_FRAMES;
+
+    private final Type type;
+    private int access = ACC_PUBLIC;
+    private Type superclass = OBJECT;
+    private Set<String> interfaces = Collections.emptySet();
+
+    // Members, most recently added last
+    private final Map<String,FieldSignature> fields = new LinkedHashMap<>();
+    private final Map<String,MethodSignature> methods = new LinkedHashMap<>();
+
+    // Methods inherited from supertypes, in the order they were added
+    private final Map<String,MethodSignature> missing = new LinkedHashMap<>();
+
+    protected PhantomClass(Type type) {
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isInterface() {
+        return (access & ACC_INTERFACE) != 0;
+    }
+
+    public void setAccess(int access) {
+        this.access = access;
+    }
+
+    public void setInterface() {
+        this.access |= ACC_INTERFACE;
+    }
+
+    public void setSuperclass(Type superclass) {
+        this.superclass = superclass;
+    }
+
+    public void setInterfaces(Set<Type> interfaces)
+    {
+        this.interfaces = new HashSet<>();
+
+        for (Type i : interfaces)
+            this.interfaces.add(i.getInternalName());
+    }
+
+    public void addField(int access, String name, String desc)
+    {
+        FieldSignature sign = new FieldSignature.Builder(name, desc)
+            .access(access).build();
+
+        fields.remove(name);
+        fields.put(name, sign);
+    }
+
+    public void addMethod(int access, String name, String desc)
+    {
+        MethodSignature sign = new MethodSignature.Builder(name, desc)
+            .access(access).build();
+
+        String key = name + desc;
+
+        methods.remove(key);
+        methods.put(key, sign);
+    }
+
+    /**
+     * Adds a method that is inherited from a supertype, unless a
+     * method with the same name and descriptor is already present.
+     */
+    public void addMissingMethod(MethodSignature m)
+    {
+        String key = m.getName() + m.getDescriptor();
+
+        if (!methods.containsKey(key) && !missing.containsKey(key))
+            missing.put(key, m);
+    }
+
+    /**
+     * Makes the given visitor visit this phantom class.
+     */
+    public void accept(ClassVisitor cv) {
+        accept(cv, cv);
+    }
+
+    // Missing methods are visited by a separate visitor
+    private void accept(ClassVisitor cv, ClassVisitor mcv)
+    {
+        cv.visit(V1_5,
+                 access,
+                 type.getInternalName(),
+                 null,
+                 superclass.getInternalName(),
+                 interfaces.toArray(new String[0]));
+
+        List<FieldSignature> fs = new ArrayList<>(fields.values());
+        List<MethodSignature> ms = new ArrayList<>(methods.values());
+
+        Collections.reverse(fs);
+        Collections.reverse(ms);
+
+        for (FieldSignature f : fs) {
+            FieldVisitor fv = cv.visitField(
+                f.getAccess(), f.getName(), f.getDescriptor(), null, null);
+
+            if (fv != null)
+                fv.visitEnd();
+        }
+
+        for (MethodSignature m : ms)
+            visitMethod(cv, m);
+
+        for (MethodSignature m : missing.values())
+            visitMethod(mcv, m);
+
+        cv.visitEnd();
+    }
+
+    private void visitMethod(ClassVisitor cv, MethodSignature m)
+    {
+        String[] exceptions = m.getExceptions().isEmpty() ?
+            null : m.getExceptionNames();
+
+        MethodVisitor mv = cv.visitMethod(
+            m.getAccess(), m.getName(), m.getDescriptor(), null, exceptions);
+
+        if (mv == null)
+            return;
+
+        // Add method body (only for classes)
+        if (!isInterface() && !m.isAbstract())
+        {
+            boolean isStatic = (m.getAccess() & ACC_STATIC) != 0;
+            int maxStack = 2;
+            int maxLocals = 0;
+
+            for (Type arg : m.getArgumentTypes())
+                maxLocals += arg.getSize();
+
+            mv.visitCode();
+
+            if (!isStatic) {
+                mv.visitVarInsn(ALOAD, 0); // this
+                maxStack++;
+                maxLocals++;
+            }
+
+            mv.visitInsn(NOP);
+
+            String exc = Type.getInternalName(
+                UnsupportedOperationException.class);
+
+            String desc = Type.getMethodType(Type.VOID_TYPE)
+                .getDescriptor();
+
+            mv.visitTypeInsn(NEW, exc);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, exc, "<init>", desc, false);
+            mv.visitInsn(ATHROW);
+            mv.visitMaxs(maxStack, maxLocals);
+        }
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates the bytecode of this phantom class.
+     */
+    public byte[] generate()
+    {
+        ClassWriter writer = new ClassWriter(options);
+
+        // Missing methods are copied from the supertypes as they are
+        // (e.g., default methods have no body in an interface), so
+        // they bypass the checks
+        accept(new CheckClassAdapter(writer), writer);
+
+        return writer.toByteArray();
+    }
+}
@@ -19,7 +19,7 @@ public class Phantoms extends ForwardingSet<Type>
 
     ////////////////////  Fields ////////////////////
 
-    private final Map<Type,Transformer> transformers = new HashMap<>();
+    private final Map<Type,PhantomClass> classes = new HashMap<>();
 
     private final MethodLookupTable mtable = new MethodLookupTable();
 
@@ -27,19 +27,15 @@ public class Phantoms extends ForwardingSet<Type>
 
     @Override
     protected Set<Type> delegate() {
-        return transformers.keySet();
+        return classes.keySet();
     }
 
-    public Transformer getTransformer(final Type type)
+    public PhantomClass getPhantomClass(final Type type)
     {
-        if (!transformers.containsKey(type))
-        {
-            Transformer tr = new Transformer(type);
+        if (!classes.containsKey(type))
+            classes.put(type, new PhantomClass(type));
 
-            tr.top = mtable.new CachingAdapter(tr.top);
-            transformers.put(type, tr);
-        }
-        return transformers.get(type);
+        return classes.get(type);
     }
 
     public MethodLookupTable getLookupTable() {
@@ -50,10 +46,10 @@ public class Phantoms extends ForwardingSet<Type>
     {
         Map<Type, byte[]> map = new HashMap<>();
 
-        for (Map.Entry<Type,Transformer> e : transformers.entrySet())
+        for (Map.Entry<Type,PhantomClass> e : classes.entrySet())
         {
             Type key = e.getKey();
-            byte[] bytes = e.getValue().transform();
+            byte[] bytes = e.getValue().generate();
 
             map.put(key, bytes);
         }
@@ -2,7 +2,7 @@ package org.clyze.jphantom.adapters;
 
 import org.clyze.jphantom.Options;
 import org.clyze.jphantom.Phantoms;
-import org.clyze.jphantom.Transformer;
+import org.clyze.jphantom.PhantomClass;
 import org.clyze.jphantom.ClassMembers;
 import org.clyze.jphantom.fields.FieldSignature;
 import org.clyze.jphantom.methods.MethodSignature;
@@ -10,7 +10,6 @@ import org.clyze.jphantom.access.*;
 import org.clyze.jphantom.hier.*;
 import org.clyze.jphantom.hier.closure.*;
 import org.clyze.jphantom.exc.IllegalBytecodeException;
-import org.clyze.jphantom.exc.PhantomLookupException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,19 +29,32 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
 
     private final Phantoms phantoms = Phantoms.V();
     private final ClassHierarchy hierarchy;
+    private final ClassHierarchy.Snapshot closure;
     private final ClassMembers members;
     private final SignatureVisitor sv;
     private Type clazz;
     private String mname;
     private String mdesc;
 
-    public ClassPhantomExtractor(int api, ClassVisitor cv, ClassHierarchy hierarchy, ClassMembers members) {
+    /**
+     * @param closure a snapshot of the given hierarchy, which may be
+     *        shared by the extractors of different classes
+     */
+    public ClassPhantomExtractor(int api, ClassVisitor cv,
+                                 ClassHierarchy hierarchy,
+                                 ClassHierarchy.Snapshot closure,
+                                 ClassMembers members) {
         super(api, cv);
         this.hierarchy = hierarchy;
+        this.closure = closure;
         this.members = members;
         this.sv = new PhantomAdder(hierarchy, members, phantoms);
     }
 
+    public ClassPhantomExtractor(int api, ClassVisitor cv, ClassHierarchy hierarchy, ClassMembers members) {
+        this(api, cv, hierarchy, new MemoizingSnapshot(hierarchy), members);
+    }
+
     public ClassPhantomExtractor(ClassVisitor cv, ClassHierarchy hierarchy, ClassMembers members) {
         this(Options.ASM_VER, cv, hierarchy, members);
     }
@@ -51,21 +63,27 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
         this(null, hierarchy, members);
     }
 
+    public ClassPhantomExtractor(ClassHierarchy hierarchy,
+                                 ClassHierarchy.Snapshot closure,
+                                 ClassMembers members) {
+        this(Options.ASM_VER, null, hierarchy, closure, members);
+    }
+
     private boolean hasPhantomSupertype(Type type)
     {
         if (!hierarchy.contains(type))
             throw new IllegalArgumentException();
 
         // Search for all supertypes
-        try {
-            new PseudoSnapshot(hierarchy).getAllSupertypes(type);
-        } catch (IncompleteSupertypesException exc) {
-            // Phantom supertype exists => load every supertype
-            for (Type i : exc.getSupertypes())
-                new SignatureReader("" + i).acceptType(sv);
-            return true;
-        }
-        return false;
+        SupertypeQuery supertypes = closure.querySupertypes(type);
+
+        if (supertypes.isComplete())
+            return false;
+
+        // Phantom supertype exists => load every supertype
+        for (Type i : supertypes.getSupertypes())
+            new SignatureReader("" + i).acceptType(sv);
+        return true;
     }
 
     @Override
@@ -102,15 +120,14 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
 
             assert phantoms.contains(klass) : klass;
         
-            Transformer tr = phantoms.getTransformer(klass);
+            PhantomClass phantom = phantoms.getPhantomClass(klass);
             ClassAccessEvent event = ClassAccessEvent.IS_ANNOTATION;
 
             int access = ClassAccessStateMachine.v()
                 .getEventSequence(klass).moveTo(event).getCurrentAccess();
 
-            // Chain an access adapter
-            assert tr.top != null;
-            tr.top = new AccessAdapter(tr.top, access);
+            // Update the access flags of the phantom class
+            phantom.setAccess(access);
         }
     }
 
@@ -187,7 +204,7 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
 
             assert phantoms.contains(inner) : inner;
 
-            Transformer tr = phantoms.getTransformer(inner);
+            PhantomClass phantom = phantoms.getPhantomClass(inner);
 
             // ClassAccessEvent event = new ClassAccessEvent.Builder()
             //     .setAccess(access)
@@ -196,10 +213,9 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
             // ClassAccessStateMachine.v()
             //     .getEventSequence(inner).moveTo(event).getCurrentAccess();
 
-            // Chain an access adapter
+            // Update the access flags of the phantom class
 
-            assert tr.top != null;
-            // tr.top = new AccessAdapter(tr.top, access);
+            // phantom.setAccess(access);
 
             // inner class attributes are not checked to be
             // consistent with the corresponding class file
@@ -258,13 +274,16 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                 // Skip available classes, except in the case of phantom field
 
                 if (hierarchy.contains(phantom)) {
-                    try {
-                        // No phantom supertypes, skip
-                        if (!hasPhantomSupertype(phantom))
-                            break;
+                    // No phantom supertypes, skip
+                    if (!hasPhantomSupertype(phantom))
+                        break;
 
-                        // Lookup Method
-                        MethodSignature sign = members.lookupMethod(phantom, name, desc);
+                    // Lookup Method
+                    ClassMembers.Lookup<MethodSignature> lookup =
+                        members.findMethod(phantom, name, desc);
+
+                    if (!lookup.isBlocked()) {
+                        MethodSignature sign = lookup.getMember();
 
                         // Lookup failed => Abstract class calling abstract method 
                         // possibly defined in an interface (TODO: check)
@@ -273,9 +292,9 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                             abstractMethod = true;
 
                             // Search for referenced method in interfaces
-                            sign = members.lookupInterfaceMethod(phantom, name, desc);
+                            lookup = members.findInterfaceMethod(phantom, name, desc);
 
-                            if (sign == null)
+                            if (!lookup.isBlocked() && lookup.getMember() == null)
                                 throw new IllegalBytecodeException.Builder(clazz)
                                     .method(mname, mdesc)
                                     .message("Method Lookup failed (%s): %s %s", phantom, desc, name)
@@ -286,23 +305,24 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                                 .method(mname, mdesc)
                                 .message("Descriptors differ: %s != %s", desc, sign.getDescriptor())
                                 .build();
+                    }
 
+                    if (!lookup.isBlocked())
                         break;
-                    } catch (PhantomLookupException exc) {
-                        logger.trace("Found missing method reference in {}: {} {}", phantom, desc, name);
-                        logger.trace("First supertype: {}", exc.missingClass());
 
-                        // Add field to first phantom supertype instead
-                        phantom = exc.missingClass();
-                        assert phantom != null;
-                    }
+                    logger.trace("Found missing method reference in {}: {} {}", phantom, desc, name);
+                    logger.trace("First supertype: {}", lookup.getPhantom());
+
+                    // Add field to first phantom supertype instead
+                    phantom = lookup.getPhantom();
+                    assert phantom != null;
                 }
 
-                // Get top class visitor
+                // Get the model of the phantom class
 
                 assert phantoms.contains(phantom) : phantom;
 
-                Transformer tr = phantoms.getTransformer(phantom);
+                PhantomClass pc = phantoms.getPhantomClass(phantom);
 
                 // Construct new method access context
 
@@ -318,10 +338,9 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                     int access = MethodAccessStateMachine.v()
                         .getEventSequence(name, phantom, desc).moveTo(event).getCurrentAccess();
 
-                    // Chain a method-adder adapter
+                    // Add the method to the phantom class
 
-                    assert tr.top != null;
-                    tr.top = new MethodAdder(tr.top, access, name, desc);
+                    pc.addMethod(access, name, desc);
 
                 } catch(IllegalTransitionException exc) {
 
@@ -409,16 +428,19 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                 // Skip available classes, except in the case of phantom field
 
                 if (hierarchy.contains(phantom)) {
-                    try {
-                        // No phantom supertypes, skip
-                        if (!hasPhantomSupertype(phantom))
-                            break;
+                    // No phantom supertypes, skip
+                    if (!hasPhantomSupertype(phantom))
+                        break;
 
-                        // Lookup either in superclasses, or in both class and
-                        // interface supertypes in case of a static field.
-                        FieldSignature sign = (opcode == GETSTATIC || opcode == PUTSTATIC)
-                            ? members.lookupStaticField(phantom, name)
-                            : members.lookupField(phantom, name);
+                    // Lookup either in superclasses, or in both class and
+                    // interface supertypes in case of a static field.
+                    ClassMembers.Lookup<FieldSignature> lookup =
+                        (opcode == GETSTATIC || opcode == PUTSTATIC)
+                        ? members.findStaticField(phantom, name)
+                        : members.findField(phantom, name);
+
+                    if (!lookup.isBlocked()) {
+                        FieldSignature sign = lookup.getMember();
 
                         // Lookup failed and no phantom supertypes were found
                         if (sign == null)
@@ -435,19 +457,19 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                                 .build();
 
                         break;
-                    } catch (PhantomLookupException exc) {
-                        logger.trace("Found missing field reference in {}: {} {}", phantom, desc, name);
-
-                        // Add field to first phantom supertype instead
-                        phantom = exc.missingClass();
                     }
+
+                    logger.trace("Found missing field reference in {}: {} {}", phantom, desc, name);
+
+                    // Add field to first phantom supertype instead
+                    phantom = lookup.getPhantom();
                 }
 
-                // Get top class visitor
+                // Get the model of the phantom class
 
                 assert phantoms.contains(phantom) : phantom;
 
-                Transformer tr = phantoms.getTransformer(phantom);
+                PhantomClass pc = phantoms.getPhantomClass(phantom);
 
                 // Construct new field access context
 
@@ -463,10 +485,9 @@ public class ClassPhantomExtractor extends ClassVisitor implements Opcodes
                     int access = FieldAccessStateMachine.v()
                         .getEventSequence(name, phantom).moveTo(event).getCurrentAccess();
 
-                    // Chain a field-adder adapter
+                    // Add the field to the phantom class
 
-                    assert tr.top != null;
-                    tr.top = new FieldAdder(tr.top, access, name, desc);
+                    pc.addField(access, name, desc);
 
                 } catch(IllegalTransitionException exc) {
 
@@ -1,7 +1,6 @@
 package org.clyze.jphantom.adapters;
 
 import java.util.*;
-import java.io.IOException;
 import org.clyze.jphantom.hier.*;
 import org.clyze.jphantom.*;
 
@@ -46,53 +45,38 @@ public class PhantomAdder extends SignatureVisitor implements Opcodes
             return;
 
         /* Check if class can be resolved in the system (e.g. java.util) */
-        try {
-            // Use the bootstrap loader, so that it works for types
-            // that happen to be included in jphantom itself
-
-            Class<?> clazz = Class.forName(objType.getClassName(), false, null);
+        LibraryClassHierarchy library = LibraryClassHierarchy.getInstance();
 
+        if (library.contains(objType))
+        {
             // At this point, a library type was found. We first have
             // to add it to the hierarchy of referenced types, along
             // with all of its supertypes.
 
-            // Create a set of types referenced so far.
-
-            Set<Type> prev = new HashSet<>();
-
-            for (Type t : hierarchy)
-                prev.add(t);
-
-            // Import from default class loader. At this point, we may
-            // be at an inconsistent state since a library type could
-            // have been added recursively to the hierarchy, but its
+            // Import from library. At this point, we may be at an
+            // inconsistent state since a library type could have
+            // been added recursively to the hierarchy, but its
             // members may have not been recorded.
 
-            ClassHierarchies.loadSystemType(hierarchy, clazz);
+            List<Type> added = ClassHierarchies.loadLibraryType(hierarchy, objType);
 
-            assert hierarchy.contains(objType) && !prev.contains(objType);
+            assert hierarchy.contains(objType) && added.contains(objType);
 
-            // Record members of each library type, added just now.
-            for (Type t : hierarchy)
-                if (!prev.contains(t))
-                    new ClassReader(t.getInternalName()).accept(members.new Feeder(), 0);
+            // Record each library type, added just now. Its members
+            // are only parsed if some lookup reaches it.
+            for (Type t : added)
+                members.addLibraryType(t);
 
             return;
-        } catch (ClassNotFoundException ign) {
-
-            // Class could not be loaded. Record it as a phantom class...
-            // Note intentional fallthrough.
-
-        } catch (IOException exc) {
-            logger.warn("Could not locate library type: {}", objType);
-            throw new RuntimeException(exc);
         }
 
+        // Class could not be found. Record it as a phantom class...
+
         /* Add to phantom classes */
         if (!phantoms.contains(objType))
         {
             // Lazy implementation will provide a default value
-            phantoms.getTransformer(objType);
+            phantoms.getPhantomClass(objType);
 
             logger.info("Phantom Class \"{}\" detected", objType.getClassName());
         }
@@ -0,0 +1,20 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.IOException;
+
+/**
+ * A location that class files can be read from, such as the run-time
+ * image of a JDK.
+ */
+public interface ClassSource
+{
+    /**
+     * Reads the class file of a type.
+     *
+     * @param internalName the internal name of the type
+     * @return the contents of the class file, or {@code null} if
+     *         this source does not contain the given type
+     * @throws IOException if the class file exists but cannot be read
+     */
+    byte[] getClassFile(String internalName) throws IOException;
+}
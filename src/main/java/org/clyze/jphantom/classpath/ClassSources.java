@@ -0,0 +1,150 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.util.*;
+
+public class ClassSources
+{
+    private ClassSources() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the class library of a JDK, which may be given as any
+     * of the following:
+     * <ul>
+     *   <li>the home directory of a modular JDK (with a
+     *       {@code lib/modules} image)</li>
+     *   <li>the home directory of a Java 8 JDK or JRE</li>
+     *   <li>a directory of {@code .jmod} files</li>
+     *   <li>a single jar, such as {@code rt.jar}</li>
+     * </ul>
+     */
+    public static IndexableClassSource forJdk(Path jdk) throws IOException
+    {
+        if (!Files.exists(jdk))
+            throw new FileNotFoundException(jdk.toString());
+
+        // Single jar (e.g., rt.jar)
+        if (!Files.isDirectory(jdk))
+            return new ZipClassSource(jdk);
+
+        // Modular run-time image
+        if (Files.isRegularFile(jdk.resolve("lib").resolve("modules")))
+            return new JrtClassSource(jrtFileSystem(jdk));
+
+        // Directory of jmod files
+        List<Path> jmods = list(jdk, ".jmod");
+
+        if (!jmods.isEmpty())
+        {
+            List<ZipClassSource> sources = new ArrayList<>();
+
+            for (Path jmod : jmods)
+                sources.add(new ZipClassSource(jmod, "classes/"));
+
+            return new CompositeClassSource(sources);
+        }
+
+        // Java 8 home (JDK or JRE)
+        for (Path lib : new Path[] {
+                jdk.resolve("jre").resolve("lib"), jdk.resolve("lib") })
+        {
+            if (!Files.isRegularFile(lib.resolve("rt.jar")))
+                continue;
+
+            // The boot class path consists of rt.jar, followed by the
+            // rest of the jars of the same directory
+
+            List<ZipClassSource> sources = new ArrayList<>();
+
+            sources.add(new ZipClassSource(lib.resolve("rt.jar")));
+
+            for (Path jar : list(lib, ".jar"))
+                if (!jar.getFileName().toString().equals("rt.jar"))
+                    sources.add(new ZipClassSource(jar));
+
+            return new CompositeClassSource(sources);
+        }
+
+        throw new IOException("Not a JDK, jmods directory or jar: " + jdk);
+    }
+
+    /**
+     * Returns the class source of a classpath, whose entries (jars
+     * or directories) are separated by the platform path separator.
+     * Entries are consulted in order, and are only read on demand.
+     */
+    public static CompositeClassSource forClasspath(String classpath) throws IOException
+    {
+        List<ClassSource> sources = new ArrayList<>();
+
+        for (String entry : classpath.split(File.pathSeparator))
+        {
+            if (entry.isEmpty())
+                continue;
+
+            Path path = FileSystems.getDefault().getPath(entry);
+
+            if (Files.isDirectory(path))
+                sources.add(new DirectoryClassSource(path));
+            else if (Files.isRegularFile(path))
+                sources.add(new ZipClassSource(path));
+            else
+                throw new FileNotFoundException(entry);
+        }
+        return new CompositeClassSource(sources);
+    }
+
+    /**
+     * Returns a string that identifies the contents of a JDK, as
+     * accepted by {@link #forJdk(Path)}.
+     */
+    public static String identityOf(Path jdk) throws IOException
+    {
+        Path real = jdk.toRealPath();
+        Path release = real.resolve("release");
+        Path stamp = Files.isRegularFile(release) ? release : real;
+
+        return real + " " + Files.getLastModifiedTime(stamp).toMillis();
+    }
+
+    private static FileSystem jrtFileSystem(Path home) throws IOException
+    {
+        URI uri = URI.create("jrt:/");
+        Map<String,String> env =
+            Collections.singletonMap("java.home", home.toString());
+
+        // Running on a modular JDK, whose jrt provider can open other
+        // images directly. Otherwise, the provider of the target image
+        // has to be loaded from its own lib/jrt-fs.jar.
+
+        if (JrtClassSource.system() != null)
+            return FileSystems.newFileSystem(uri, env);
+
+        URL jrtfs = home.resolve("lib").resolve("jrt-fs.jar").toUri().toURL();
+        ClassLoader loader = new URLClassLoader(new URL[] { jrtfs });
+
+        return FileSystems.newFileSystem(uri, env, loader);
+    }
+
+    private static List<Path> list(Path dir, String suffix) throws IOException
+    {
+        List<Path> paths = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + suffix)) {
+            for (Path p : stream)
+                if (Files.isRegularFile(p))
+                    paths.add(p);
+        }
+
+        // Directory order is unspecified
+        Collections.sort(paths);
+
+        return paths;
+    }
+}
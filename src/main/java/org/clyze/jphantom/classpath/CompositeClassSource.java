@@ -0,0 +1,55 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A sequence of class sources, consulted in order. The first source
+ * that contains a type shadows any later ones.
+ */
+public class CompositeClassSource implements IndexableClassSource
+{
+    private final List<ClassSource> sources;
+
+    public CompositeClassSource(List<? extends ClassSource> sources) {
+        this.sources = new ArrayList<>(sources);
+    }
+
+    public List<ClassSource> getSources() {
+        return Collections.unmodifiableList(sources);
+    }
+
+    @Override
+    public byte[] getClassFile(String internalName) throws IOException
+    {
+        for (ClassSource source : sources)
+        {
+            byte[] bytes = source.getClassFile(internalName);
+
+            if (bytes != null)
+                return bytes;
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<String> getClassNames() throws IOException
+    {
+        Set<String> names = new LinkedHashSet<>();
+
+        for (ClassSource source : sources)
+        {
+            if (!(source instanceof IndexableClassSource))
+                throw new UnsupportedOperationException(
+                    "Cannot enumerate class source: " + source);
+
+            names.addAll(((IndexableClassSource) source).getClassNames());
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return sources.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Reads class files from a directory tree, laid out by package as on
+ * a classpath.
+ */
+public class DirectoryClassSource implements IndexableClassSource
+{
+    private final Path dir;
+
+    public DirectoryClassSource(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public byte[] getClassFile(String internalName) throws IOException
+    {
+        Path file = dir.resolve(internalName + ".class");
+
+        return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+    }
+
+    @Override
+    public Collection<String> getClassNames() throws IOException
+    {
+        final List<String> names = new ArrayList<>();
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                {
+                    String name = dir.relativize(file).toString();
+
+                    if (name.endsWith(".class") && !name.endsWith("module-info.class"))
+                        names.add(name
+                                  .substring(0, name.length() - ".class".length())
+                                  .replace(file.getFileSystem().getSeparator(), "/"));
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A class source whose contents can be enumerated, so that it can be
+ * indexed ahead of time.
+ */
+public interface IndexableClassSource extends ClassSource
+{
+    /**
+     * Returns the internal names of all types of this source.
+     */
+    Collection<String> getClassNames() throws IOException;
+}
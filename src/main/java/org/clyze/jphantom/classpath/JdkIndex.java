@@ -0,0 +1,493 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import org.objectweb.asm.*;
+import org.clyze.jphantom.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A precomputed, memory-mapped index of every type of a class
+ * library (typically a JDK), holding exactly what hierarchy
+ * construction and member lookups need: the supertypes of each type,
+ * along with the access flags and descriptors of its fields and
+ * methods.
+ *
+ * The index is built once per library and stored in a single file.
+ * Later runs map that file and decode only the records they actually
+ * visit, which is much cheaper than locating and parsing class files.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   int magic, int version, identity (int length, UTF-8 bytes)
+ *   int #strings, int #slots, int size of records
+ *   int[#strings]      string offsets (relative to string area)
+ *   (int,int)[#slots]  hash slots: name hash, record offset (or -1)
+ *   records            (relative offsets)
+ *   strings            (int length, UTF-8 bytes)
+ * </pre>
+ *
+ * Each record consists of the class version, access flags, name,
+ * superclass and interfaces, followed by its fields (access, name,
+ * descriptor) and methods (access, name, descriptor, exceptions).
+ * Names are string table indices; -1 stands for {@code null}.
+ */
+public class JdkIndex
+{
+    private static final int MAGIC = 0x4A504858;
+    private static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    private final String identity;
+    private final int strings;
+    private final int slots;
+    private final int stringOffsetsBase;
+    private final int slotsBase;
+    private final int recordsBase;
+    private final int stringsBase;
+    private final String[] decoded;
+
+    private final static Logger logger =
+        LoggerFactory.getLogger(JdkIndex.class);
+
+    private JdkIndex(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a jphantom index (version " + VERSION + ")");
+
+        int identityLength = buffer.getInt(8);
+        this.identity = decode(12, identityLength);
+
+        int pos = 12 + identityLength;
+
+        this.strings = buffer.getInt(pos);
+        this.slots = buffer.getInt(pos + 4);
+        this.stringOffsetsBase = pos + 12;
+        this.slotsBase = stringOffsetsBase + 4 * strings;
+        this.recordsBase = slotsBase + 8 * slots;
+        this.stringsBase = recordsBase + buffer.getInt(pos + 8);
+        this.decoded = new String[strings];
+    }
+
+    /**
+     * Maps an existing index file.
+     */
+    public static JdkIndex open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return new JdkIndex(buffer);
+        }
+    }
+
+    /**
+     * Returns the index of the given library, stored under the given
+     * directory. The index is built first, if it does not exist or
+     * was built for a different library.
+     *
+     * @param dir the directory that holds the indices
+     * @param identity a string that uniquely identifies the library
+     * @param source the library itself
+     */
+    public static JdkIndex openOrBuild(Path dir, String identity, IndexableClassSource source)
+        throws IOException
+    {
+        Path file = dir.resolve(
+            "jdk-" + String.format("%08x", identity.hashCode()) + ".idx");
+
+        if (Files.exists(file))
+        {
+            try {
+                JdkIndex index = open(file);
+
+                if (index.getIdentity().equals(identity))
+                    return index;
+            } catch (IOException | RuntimeException exc) {
+                logger.warn("Ignoring corrupt index {}: {}", file, exc.toString());
+            }
+        }
+
+        logger.info("Building index of {} at {}", identity, file);
+
+        Files.createDirectories(dir);
+
+        // Write to a temporary file first, so that concurrent runs
+        // never observe a partially written index
+
+        Path tmp = Files.createTempFile(dir, "jdk-", ".tmp");
+
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                write(identity, source, out);
+            }
+
+            // Temporary files are created readable by their owner
+            // only; the index should be as readable as a normal file
+
+            if (Files.getFileStore(tmp).supportsFileAttributeView(PosixFileAttributeView.class))
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-r--r--"));
+
+            Files.move(tmp, file,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        return open(file);
+    }
+
+    public String getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Returns true if the index contains the given type.
+     */
+    public boolean contains(String internalName) {
+        return find(internalName) >= 0;
+    }
+
+    public int getAccess(String internalName) {
+        return buffer.getInt(checkedFind(internalName) + 4);
+    }
+
+    public String getSuperName(String internalName) {
+        return string(buffer.getInt(checkedFind(internalName) + 12));
+    }
+
+    public String[] getInterfaces(String internalName)
+    {
+        int pos = checkedFind(internalName) + 16;
+        String[] ifaces = new String[buffer.getInt(pos)];
+
+        for (int i = 0; i < ifaces.length; i++)
+            ifaces[i] = string(buffer.getInt(pos += 4));
+
+        return ifaces;
+    }
+
+    /**
+     * Replays the header, fields and methods of a type, as if its
+     * class file (stripped of code, attributes and generic
+     * signatures) was read by a {@link ClassReader}.
+     */
+    public void accept(String internalName, ClassVisitor visitor)
+    {
+        int pos = checkedFind(internalName);
+
+        int version = buffer.getInt(pos);
+        int access = buffer.getInt(pos + 4);
+        String superName = string(buffer.getInt(pos + 12));
+        String[] ifaces = new String[buffer.getInt(pos + 16)];
+
+        pos += 20;
+
+        for (int i = 0; i < ifaces.length; i++, pos += 4)
+            ifaces[i] = string(buffer.getInt(pos));
+
+        visitor.visit(version, access, internalName, null, superName, ifaces);
+
+        // Fields
+        int nfields = buffer.getInt(pos);
+        pos += 4;
+
+        for (int i = 0; i < nfields; i++, pos += 12)
+        {
+            FieldVisitor fv = visitor.visitField(
+                buffer.getInt(pos),
+                string(buffer.getInt(pos + 4)),
+                string(buffer.getInt(pos + 8)),
+                null, null);
+
+            if (fv != null)
+                fv.visitEnd();
+        }
+
+        // Methods
+        int nmethods = buffer.getInt(pos);
+        pos += 4;
+
+        for (int i = 0; i < nmethods; i++)
+        {
+            int macc = buffer.getInt(pos);
+            String name = string(buffer.getInt(pos + 4));
+            String desc = string(buffer.getInt(pos + 8));
+            String[] exceptions = new String[buffer.getInt(pos + 12)];
+
+            pos += 16;
+
+            for (int j = 0; j < exceptions.length; j++, pos += 4)
+                exceptions[j] = string(buffer.getInt(pos));
+
+            MethodVisitor mv = visitor.visitMethod(
+                macc, name, desc, null, exceptions.length == 0 ? null : exceptions);
+
+            if (mv != null)
+                mv.visitEnd();
+        }
+
+        visitor.visitEnd();
+    }
+
+    ///////////////////// Lookup /////////////////////
+
+    private int checkedFind(String internalName)
+    {
+        int pos = find(internalName);
+
+        if (pos < 0)
+            throw new TypeNotPresentException(internalName.replace('/', '.'), null);
+
+        return pos;
+    }
+
+    // Returns the absolute position of the record, or -1
+    private int find(String internalName)
+    {
+        int hash = internalName.hashCode();
+
+        for (int i = hash & (slots - 1);; i = (i + 1) & (slots - 1))
+        {
+            int slot = slotsBase + 8 * i;
+            int offset = buffer.getInt(slot + 4);
+
+            if (offset < 0)
+                return -1;
+
+            if (buffer.getInt(slot) != hash)
+                continue;
+
+            int pos = recordsBase + offset;
+
+            if (string(buffer.getInt(pos + 8)).equals(internalName))
+                return pos;
+        }
+    }
+
+    private String string(int id)
+    {
+        if (id < 0)
+            return null;
+
+        // Benign race: strings are immutable and
+        // decoding always yields equal values
+        String s = decoded[id];
+
+        if (s == null) {
+            int pos = stringsBase + buffer.getInt(stringOffsetsBase + 4 * id);
+            s = decode(pos + 4, buffer.getInt(pos));
+            decoded[id] = s;
+        }
+        return s;
+    }
+
+    private String decode(int pos, int length)
+    {
+        byte[] bytes = new byte[length];
+
+        // Absolute reads; the covariant Buffer overrides of JDK 9+
+        // would not link on a Java 8 runtime
+        for (int i = 0; i < length; i++)
+            bytes[i] = buffer.get(pos + i);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    ///////////////////// Building /////////////////////
+
+    private static void write(String identity, IndexableClassSource source, OutputStream stream)
+        throws IOException
+    {
+        final Map<String,Integer> stringIds = new HashMap<>();
+        final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        final DataOutputStream stringOut = new DataOutputStream(stringBytes);
+        final List<Integer> stringOffsets = new ArrayList<>();
+
+        final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+
+        final List<String> names = new ArrayList<>();
+        final List<Integer> recordOffsets = new ArrayList<>();
+
+        class Strings {
+            int id(String s) throws IOException {
+                if (s == null)
+                    return -1;
+
+                Integer id = stringIds.get(s);
+
+                if (id == null) {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+                    id = stringOffsets.size();
+                    stringIds.put(s, id);
+                    stringOffsets.add(stringOut.size());
+                    stringOut.writeInt(bytes.length);
+                    stringOut.write(bytes);
+                }
+                return id;
+            }
+        }
+
+        final Strings table = new Strings();
+
+        for (String className : source.getClassNames())
+        {
+            byte[] bytes = source.getClassFile(className);
+
+            if (bytes == null)
+                continue;
+
+            final List<int[]> fields = new ArrayList<>();
+            final List<int[]> methods = new ArrayList<>();
+            final int[] header = new int[4];
+            final List<String> ifaces = new ArrayList<>();
+
+            new ClassReader(bytes).accept(new ClassVisitor(Options.ASM_VER) {
+                    @Override
+                    public void visit(int version, int access, String name,
+                                      String signature, String superName, String[] interfaces)
+                    {
+                        header[0] = version;
+                        header[1] = access;
+                        header[2] = -1;
+                        header[3] = -1;
+
+                        try {
+                            header[2] = table.id(name);
+                            header[3] = table.id(superName);
+
+                            if (interfaces != null)
+                                ifaces.addAll(Arrays.asList(interfaces));
+                        } catch (IOException exc) {
+                            throw new UncheckedIOException(exc);
+                        }
+                    }
+
+                    @Override
+                    public FieldVisitor visitField(int access, String name, String desc,
+                                                   String signature, Object value)
+                    {
+                        try {
+                            fields.add(new int[] {access, table.id(name), table.id(desc)});
+                        } catch (IOException exc) {
+                            throw new UncheckedIOException(exc);
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public MethodVisitor visitMethod(int access, String name, String desc,
+                                                     String signature, String[] exceptions)
+                    {
+                        try {
+                            int nexc = (exceptions == null) ? 0 : exceptions.length;
+                            int[] record = new int[4 + nexc];
+
+                            record[0] = access;
+                            record[1] = table.id(name);
+                            record[2] = table.id(desc);
+                            record[3] = nexc;
+
+                            for (int i = 0; i < nexc; i++)
+                                record[4 + i] = table.id(exceptions[i]);
+
+                            methods.add(record);
+                        } catch (IOException exc) {
+                            throw new UncheckedIOException(exc);
+                        }
+                        return null;
+                    }
+                }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+            // Write record
+
+            names.add(className);
+            recordOffsets.add(recordOut.size());
+
+            recordOut.writeInt(header[0]);
+            recordOut.writeInt(header[1]);
+            recordOut.writeInt(header[2]);
+            recordOut.writeInt(header[3]);
+            recordOut.writeInt(ifaces.size());
+
+            for (String iface : ifaces)
+                recordOut.writeInt(table.id(iface));
+
+            recordOut.writeInt(fields.size());
+
+            for (int[] f : fields)
+                for (int x : f)
+                    recordOut.writeInt(x);
+
+            recordOut.writeInt(methods.size());
+
+            for (int[] m : methods)
+                for (int x : m)
+                    recordOut.writeInt(x);
+        }
+
+        // Build an open addressing hash table with a load factor
+        // of at most one half
+
+        int slots = Integer.highestOneBit(Math.max(1, names.size())) << 2;
+        int[] hashes = new int[slots];
+        int[] offsets = new int[slots];
+
+        Arrays.fill(offsets, -1);
+
+        for (int n = 0; n < names.size(); n++)
+        {
+            int hash = names.get(n).hashCode();
+            int i = hash & (slots - 1);
+
+            while (offsets[i] >= 0)
+                i = (i + 1) & (slots - 1);
+
+            hashes[i] = hash;
+            offsets[i] = recordOffsets.get(n);
+        }
+
+        // Write everything
+
+        DataOutputStream out = new DataOutputStream(stream);
+        byte[] id = identity.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(id.length);
+        out.write(id);
+        out.writeInt(stringOffsets.size());
+        out.writeInt(slots);
+        out.writeInt(recordOut.size());
+
+        for (int offset : stringOffsets)
+            out.writeInt(offset);
+
+        for (int i = 0; i < slots; i++) {
+            out.writeInt(hashes[i]);
+            out.writeInt(offsets[i]);
+        }
+
+        recordOut.flush();
+        recordBytes.writeTo(out);
+        stringOut.flush();
+        stringBytes.writeTo(out);
+        out.flush();
+
+        logger.info("Indexed {} types ({} strings)", names.size(), stringOffsets.size());
+    }
+}
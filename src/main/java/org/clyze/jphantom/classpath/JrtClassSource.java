@@ -0,0 +1,127 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads class files from the {@code jrt:/} file system of a modular
+ * (Java 9+) run-time image, without loading any classes.
+ *
+ * The package directory of the image is scanned once, so that every
+ * lookup only has to visit the module(s) that contain the package of
+ * the requested type.
+ */
+public class JrtClassSource implements IndexableClassSource
+{
+    private final FileSystem jrt;
+    private Map<String, List<String>> modules;
+
+    private final static Logger logger =
+        LoggerFactory.getLogger(JrtClassSource.class);
+
+    public JrtClassSource(FileSystem jrt) {
+        this.jrt = jrt;
+    }
+
+    // The package directory is only scanned on first lookup, since
+    // an index may make it unnecessary altogether
+    private synchronized Map<String, List<String>> modules() throws IOException
+    {
+        if (modules != null)
+            return modules;
+
+        Map<String, List<String>> modules = new HashMap<>();
+
+        // Map each package to its modules, using the
+        // /packages/<package>/<module> links of the image
+
+        try (DirectoryStream<Path> packages =
+             Files.newDirectoryStream(jrt.getPath("/packages")))
+        {
+            for (Path pkg : packages)
+            {
+                List<String> mods = new ArrayList<>(1);
+
+                try (DirectoryStream<Path> links = Files.newDirectoryStream(pkg)) {
+                    for (Path link : links)
+                        mods.add(link.getFileName().toString());
+                }
+
+                modules.put(pkg.getFileName().toString().replace('.', '/'), mods);
+            }
+        }
+
+        logger.debug("Indexed {} packages of run-time image", modules.size());
+
+        return this.modules = modules;
+    }
+
+    /**
+     * Returns the run-time image of the running JVM, or {@code null}
+     * if it is not modular.
+     */
+    public static JrtClassSource system()
+    {
+        try {
+            return new JrtClassSource(
+                FileSystems.getFileSystem(URI.create("jrt:/")));
+        } catch (ProviderNotFoundException | FileSystemNotFoundException exc) {
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] getClassFile(String internalName) throws IOException
+    {
+        int i = internalName.lastIndexOf('/');
+        String pkg = (i < 0) ? "" : internalName.substring(0, i);
+        List<String> mods = modules().get(pkg);
+
+        if (mods == null)
+            return null;
+
+        for (String mod : mods)
+        {
+            Path file = jrt.getPath("/modules", mod, internalName + ".class");
+
+            if (Files.exists(file))
+                return Files.readAllBytes(file);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<String> getClassNames() throws IOException
+    {
+        final Set<String> names = new TreeSet<>();
+
+        try (DirectoryStream<Path> mods =
+             Files.newDirectoryStream(jrt.getPath("/modules")))
+        {
+            for (final Path mod : mods)
+                Files.walkFileTree(mod, new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                        {
+                            String name = mod.relativize(file).toString();
+
+                            if (name.endsWith(".class") && !name.endsWith("module-info.class"))
+                                names.add(name.substring(0, name.length() - ".class".length()));
+
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return "jrt:/";
+    }
+}
@@ -0,0 +1,31 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.*;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Reads class files as resources of a class loader. Used for
+ * non-modular (Java 8) run-time images, whose classes are only
+ * reachable through the bootstrap loader.
+ */
+public class ResourceClassSource implements ClassSource
+{
+    private final ClassLoader loader;
+
+    public ResourceClassSource(ClassLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public byte[] getClassFile(String internalName) throws IOException
+    {
+        try (InputStream stream = loader.getResourceAsStream(internalName + ".class")) {
+            return (stream == null) ? null : ByteStreams.toByteArray(stream);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return loader.toString();
+    }
+}
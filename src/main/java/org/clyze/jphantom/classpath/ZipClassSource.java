@@ -0,0 +1,79 @@
+package org.clyze.jphantom.classpath;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.*;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Reads class files from a zip archive, such as a jar or a jmod
+ * file. Entries are located through the central directory of the
+ * archive, so only the class files that are actually requested get
+ * inflated.
+ */
+public class ZipClassSource implements IndexableClassSource, Closeable
+{
+    private final Path path;
+    private final ZipFile zip;
+    private final String prefix;
+
+    /**
+     * @param path the archive
+     * @param prefix the directory that class files reside under
+     *        (e.g. {@code "classes/"} for jmod files)
+     */
+    public ZipClassSource(Path path, String prefix) throws IOException
+    {
+        this.path = path;
+        this.zip = new ZipFile(path.toFile());
+        this.prefix = prefix;
+    }
+
+    public ZipClassSource(Path path) throws IOException {
+        this(path, "");
+    }
+
+    @Override
+    public byte[] getClassFile(String internalName) throws IOException
+    {
+        ZipEntry entry = zip.getEntry(prefix + internalName + ".class");
+
+        if (entry == null)
+            return null;
+
+        try (InputStream stream = zip.getInputStream(entry)) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
+
+    @Override
+    public Collection<String> getClassNames()
+    {
+        List<String> names = new ArrayList<>();
+
+        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();)
+        {
+            String name = e.nextElement().getName();
+
+            if (!name.startsWith(prefix) || !name.endsWith(".class"))
+                continue;
+
+            name = name.substring(prefix.length(), name.length() - ".class".length());
+
+            if (!name.endsWith("module-info"))
+                names.add(name);
+        }
+        return names;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -19,11 +19,19 @@ public abstract class AbstractExtractor implements ConversionVisitor, Types
     private final static Logger logger = 
         LoggerFactory.getLogger(AbstractExtractor.class);
 
-    public AbstractExtractor(TypeConstraintSolver solver)
+    public AbstractExtractor(TypeConstraintSolver solver) {
+        this(solver, new CopyingSnapshot(solver.getHierarchy()));
+    }
+
+    /**
+     * @param closure a snapshot of the solver's hierarchy; it may be
+     *        shared by several extractors, if it is thread-safe
+     */
+    public AbstractExtractor(TypeConstraintSolver solver, ClassHierarchy.Snapshot closure)
     {
         this.solver = solver;
         this.hierarchy = solver.getHierarchy();
-        this.closure = new CopyingSnapshot(hierarchy);
+        this.closure = closure;
     }
     
     /////////////////// Conversion Visitor ///////////////////
@@ -73,12 +81,16 @@ public abstract class AbstractExtractor implements ConversionVisitor, Types
         // Non-array reference types
 
         if (hierarchy.contains(conv.from) && hierarchy.contains(conv.to)) {
-            try {
-                // Check if conversion is legal w.r.t. our class hierarchy
-                if (!closure.isSubtypeOf(conv.from, conv.to))
-                    throw new InsolvableConstraintException(conv.asConstraint());
+            SupertypeQuery supertypes = closure.querySupertypes(conv.from);
+
+            // Check if conversion is legal w.r.t. our class hierarchy
+            if (conv.from.equals(conv.to) || supertypes.includes(conv.to))
                 return;
-            } catch (IncompleteSupertypesException exc) {} // Add constraint below
+
+            if (supertypes.isComplete())
+                throw new InsolvableConstraintException(conv.asConstraint());
+
+            // Add constraint below, since it may be satisfied eventually
         }
 
         // Add constraint to underlying solver
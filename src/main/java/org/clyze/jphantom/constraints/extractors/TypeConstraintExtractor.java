@@ -10,6 +10,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.clyze.jphantom.exc.*;
 import org.clyze.jphantom.dataflow.*;
+import org.clyze.jphantom.hier.ClassHierarchy;
+import org.clyze.jphantom.hier.LibraryClassHierarchy;
+import org.clyze.jphantom.hier.closure.CopyingSnapshot;
+import org.clyze.jphantom.hier.closure.ResolvedTypes;
 import org.clyze.jphantom.conversions.*;
 import org.clyze.jphantom.constraints.solvers.*;
 import org.clyze.jphantom.ArrayTypes;
@@ -25,14 +29,28 @@ public class TypeConstraintExtractor extends AbstractExtractor
 
     private final Analyzer<CompoundValue> analyzer;
     private final Interpreter<CompoundValue> interpreter;
+    private final ResolvedTypes resolved;
     private String cName;
     private Type returnType;
-    private Map<Label,List<Command>> commands;
+    private int skippedMethods = 0;
    
     public TypeConstraintExtractor(TypeConstraintSolver solver) {
-        super(solver);
+        this(solver, new CopyingSnapshot(solver.getHierarchy()));
+    }
+
+    public TypeConstraintExtractor(TypeConstraintSolver solver, ClassHierarchy.Snapshot closure) {
+        super(solver, closure);
         this.interpreter = new ExtendedInterpreter(hierarchy);
         this.analyzer = new Analyzer<>(interpreter);
+        this.resolved = new ResolvedTypes(hierarchy, LibraryClassHierarchy.getInstance());
+    }
+
+    /**
+     * Returns the number of methods whose analysis was skipped, since
+     * they could not contribute any constraints.
+     */
+    public int getSkippedMethods() {
+        return skippedMethods;
     }
 
     public final void visit(ClassNode node) throws AnalyzerException {
@@ -47,37 +65,21 @@ public class TypeConstraintExtractor extends AbstractExtractor
 
     public final void visit(MethodNode meth) throws AnalyzerException
     {
+        // Frame analysis is by far the most expensive step; avoid it
+        // when every type involved in the method is fully resolved
+        if (!isRelevant(meth)) {
+            logger.trace("  ... skipping method {} {}", meth.name, meth.desc);
+            skippedMethods++;
+            return;
+        }
+
         // Save return type
         returnType = Type.getReturnType(meth.desc);
 
         // Analyze Method
         analyzer.analyze(cName, meth);
 
-        MethodConstraintExtractor mv = new MethodConstraintExtractor();
-
-        // Local Variable Map
-
-        commands = new HashMap<>();
-
-        if (meth.localVariables != null)
-            for (LocalVariableNode local : meth.localVariables) {
-                Type t = Type.getType(local.desc);
-                int index = local.index;
-                Label start = local.start.getLabel();
-                Label end = local.end.getLabel();
-
-                Command addition = mv.new LocalVariableAddition(index, t, local.name);
-                Command removal = mv.new LocalVariableRemoval(index, t, local.name);
-
-                if (!commands.containsKey(start))
-                    commands.put(start, new LinkedList<Command>());
-
-                if (!commands.containsKey(end))
-                    commands.put(end, new LinkedList<Command>());
-
-                commands.get(start).add(addition);
-                commands.get(end).add(removal);
-            }
+        MethodConstraintExtractor mv = new MethodConstraintExtractor(meth);
 
         // Extract constraints
 
@@ -94,23 +96,202 @@ public class TypeConstraintExtractor extends AbstractExtractor
         }
     }
 
+    /**
+     * Tells whether a method may contribute any constraints, by
+     * scanning every type that its code mentions, in a single pass.
+     * Types are only constrained against one another, so a method
+     * whose types are all resolved (i.e., neither phantom types nor
+     * types with phantom supertypes) yields constraints that are
+     * satisfied already.
+     *
+     * Any value that the analyzer may infer is either of a type that
+     * is mentioned by the method (or its class), or of a library type
+     * (e.g., {@code java/lang/String} for string constants).
+     */
+    private boolean isRelevant(MethodNode meth)
+    {
+        if (meth.instructions.size() == 0)
+            return false;
+
+        // The receiver, as well as any uninitialized object
+        // that is passed to a super constructor
+        if (!isResolvedObject(cName))
+            return true;
+
+        if (!isResolvedMethod(meth.desc))
+            return true;
+
+        for (AbstractInsnNode insn : meth.instructions)
+        {
+            switch (insn.getType()) {
+            case AbstractInsnNode.TYPE_INSN:
+                if (!isResolvedObject(((TypeInsnNode) insn).desc))
+                    return true;
+                break;
+            case AbstractInsnNode.FIELD_INSN:
+                FieldInsnNode fInsn = (FieldInsnNode) insn;
+
+                if (!isResolvedObject(fInsn.owner) || !isResolved(fInsn.desc))
+                    return true;
+                break;
+            case AbstractInsnNode.METHOD_INSN:
+                MethodInsnNode mInsn = (MethodInsnNode) insn;
+
+                if (!isResolvedObject(mInsn.owner) || !isResolvedMethod(mInsn.desc))
+                    return true;
+                break;
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                InvokeDynamicInsnNode dInsn = (InvokeDynamicInsnNode) insn;
+
+                if (!isResolvedMethod(dInsn.desc) || !isResolvedConstant(dInsn.bsm))
+                    return true;
+
+                for (Object arg : dInsn.bsmArgs)
+                    if (!isResolvedConstant(arg))
+                        return true;
+                break;
+            case AbstractInsnNode.LDC_INSN:
+                if (!isResolvedConstant(((LdcInsnNode) insn).cst))
+                    return true;
+                break;
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                if (!isResolved(((MultiANewArrayInsnNode) insn).desc))
+                    return true;
+                break;
+            case AbstractInsnNode.FRAME:
+                FrameNode frame = (FrameNode) insn;
+
+                if (!isResolvedFrame(frame.local) || !isResolvedFrame(frame.stack))
+                    return true;
+                break;
+            default:
+                break;
+            }
+        }
+
+        for (TryCatchBlockNode block : meth.tryCatchBlocks)
+            if (block.type != null && !isResolvedObject(block.type))
+                return true;
+
+        if (meth.localVariables != null)
+            for (LocalVariableNode local : meth.localVariables)
+                if (!isResolved(local.desc))
+                    return true;
+
+        return false;
+    }
+
+    private boolean isResolved(String desc) {
+        return resolved.isResolved(Type.getType(desc));
+    }
+
+    private boolean isResolvedObject(String internalName) {
+        return resolved.isResolved(Type.getObjectType(internalName));
+    }
+
+    private boolean isResolvedMethod(String desc)
+    {
+        if (!resolved.isResolved(Type.getReturnType(desc)))
+            return false;
+
+        for (Type arg : Type.getArgumentTypes(desc))
+            if (!resolved.isResolved(arg))
+                return false;
+
+        return true;
+    }
+
+    private boolean isResolvedConstant(Object cst)
+    {
+        if (cst instanceof Type) {
+            Type t = (Type) cst;
+
+            return t.getSort() == Type.METHOD ?
+                isResolvedMethod(t.getDescriptor()) : resolved.isResolved(t);
+        }
+
+        if (cst instanceof Handle) {
+            Handle h = (Handle) cst;
+
+            return isResolvedObject(h.getOwner()) &&
+                (h.getTag() <= H_PUTSTATIC ?
+                 isResolved(h.getDesc()) : isResolvedMethod(h.getDesc()));
+        }
+
+        if (cst instanceof ConstantDynamic) {
+            ConstantDynamic c = (ConstantDynamic) cst;
+
+            if (!isResolved(c.getDescriptor()) ||
+                !isResolvedConstant(c.getBootstrapMethod()))
+                return false;
+
+            for (int i = 0; i < c.getBootstrapMethodArgumentCount(); i++)
+                if (!isResolvedConstant(c.getBootstrapMethodArgument(i)))
+                    return false;
+        }
+
+        // Primitive wrappers and strings
+        return true;
+    }
+
+    private boolean isResolvedFrame(List<Object> types)
+    {
+        if (types == null)
+            return true;
+
+        for (Object t : types)
+            if (t instanceof String && !isResolvedObject((String) t))
+                return false;
+
+        return true;
+    }
+
     public class MethodConstraintExtractor extends MethodVisitor
     {   
         private int insnNo = 0;
         private Map<Integer,Type> declarations = new HashMap<>();
+        private Map<Label,List<Command>> commands = new HashMap<>();
+        private final MethodNode meth;
 
         // Constructor chaining
 
-        public MethodConstraintExtractor(int api, MethodVisitor mv) {
+        public MethodConstraintExtractor(int api, MethodVisitor mv, MethodNode meth) {
             super(api, mv);
+            this.meth = meth;
         }
 
-        public MethodConstraintExtractor(MethodVisitor mv) {
-            this(Options.ASM_VER, mv);
+        public MethodConstraintExtractor(MethodVisitor mv, MethodNode meth) {
+            this(Options.ASM_VER, mv, meth);
         }
 
-        public MethodConstraintExtractor() {
-            this(null);
+        public MethodConstraintExtractor(MethodNode meth) {
+            this(null, meth);
+        }
+
+        // Local Variable Map
+        private void addLocalVariableCommands()
+        {
+            if (meth.localVariables == null)
+                return;
+
+            for (LocalVariableNode local : meth.localVariables) {
+                Type t = Type.getType(local.desc);
+                int index = local.index;
+                Label start = local.start.getLabel();
+                Label end = local.end.getLabel();
+
+                Command addition = new LocalVariableAddition(index, t, local.name);
+                Command removal = new LocalVariableRemoval(index, t, local.name);
+
+                if (!commands.containsKey(start))
+                    commands.put(start, new LinkedList<Command>());
+
+                if (!commands.containsKey(end))
+                    commands.put(end, new LinkedList<Command>());
+
+                commands.get(start).add(addition);
+                commands.get(end).add(removal);
+            }
         }
 
         private void logInstruction(int opcode) {
@@ -464,6 +645,10 @@ public class TypeConstraintExtractor extends AbstractExtractor
         public void visitCode() {
             if (analyzer.getFrames() == null)
                 throw new IllegalStateException("frames have not been set");
+
+            // Labels must be resolved at this point, since they are
+            // reset whenever a method node is visited more than once
+            addLocalVariableCommands();
             super.visitCode();
         }
 
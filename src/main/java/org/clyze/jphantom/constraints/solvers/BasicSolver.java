@@ -9,14 +9,35 @@ import org.clyze.jphantom.hier.closure.*;
 import org.clyze.jphantom.constraints.*;
 import org.jgrapht.*;
 import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHierarchy>
     implements Types, TypeConstraintSolver
 {
+    private static final Logger logger =
+        LoggerFactory.getLogger(BasicSolver.class);
+
+    // Budget of class graph solution attempts
+    private static final int MAX_ATTEMPTS = 64;
+    private static final long SEED = 0x6A7068616E746F6DL;
+
+    private static final Comparator<Type> BY_NAME = new Comparator<Type>() {
+        @Override
+        public int compare(Type t1, Type t2) {
+            return t1.getInternalName().compareTo(t2.getInternalName());
+        }
+    };
+
     private boolean initialized = false;
     protected ClassHierarchy hierarchy;
     private ClassHierarchy.Snapshot closure = null;
 
+    // Path-edges of the interface graph, and the projections of
+    // their sources
+    private Set<SubtypeConstraint> fixedSource;
+    private Map<Type,List<Type>> domains;
+
     ///////////////////// Constructors /////////////////////
 
     protected BasicSolver(Builder builder) {
@@ -45,6 +66,13 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
             return this;
         }
 
+        @Override
+        public Builder threads(int threads)
+        {
+            super.threads(threads);
+            return this;
+        }
+
         @Override
         public BasicSolver build() {
             return new BasicSolver(this);
@@ -177,53 +205,34 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
                 if (p.equals(target))
                     break;
 
-                addConstraintEdge(source = p, target);
+                graph.addEdge(source = p, target);
             }
         }
 
+        super.solveClassGraph(graph);
+    }
+
+    @Override
+    protected SingleInheritanceSolver<Type,SubtypeConstraint> solveClassComponent(
+        DirectedGraph<Type,SubtypeConstraint> component)
+        throws UnsatisfiableStateException
+    {
         // Create specialized single inheritance solver
         // that prioritizes direct subclasses
-        classSolver = new SingleInheritanceSolver<Type,SubtypeConstraint>(graph, OBJECT)
-            {
-                private Random rand = new Random(System.currentTimeMillis());
-
-                @Override
-                protected Deque<Type> order(Set<Type> unconstrained, Type parent)
-                {
-                    Deque<Type> ordered = new LinkedList<>();
-                    List<Type> rest = new LinkedList<>();
-
-                    for (Type t : unconstrained)
-                        if (hierarchy.contains(t))
-                        {
-                            Type sc = hierarchy.getSuperclass(t);
-
-                            if (!sc.equals(parent)) {
-                                SubtypeConstraint impliedEdge = _graph.getEdgeFactory().
-                                    createEdge(t, parent);
+        ClassGraphSolver solver = new ClassGraphSolver(component);
 
-                                throw new CrossoverConstraintException(impliedEdge, sc);
-                            }
-                            ordered.addLast(t);
-                        } else {
-                            rest.add(t);
-                        }
-
-                    // Randomize the remaining nodes order
-                    Collections.shuffle(rest, rand);
-
-                    ordered.addAll(rest);
-                    return ordered;
-                }
-            };
-
-        // Las Vegas Style
-        while (true) {
+        // The first attempt is deterministic; any retry shuffles the
+        // phantom types, up to a fixed number of attempts
+        for (int attempt = 1; ; attempt++) {
             try {
-                classSolver.solve();
-                break;
+                return solver.solve();
             } catch (CrossoverConstraintException exc) {
-                continue;
+                if (attempt == MAX_ATTEMPTS)
+                    throw exc;
+
+                logger.debug("Retrying class graph solution ({}): {}",
+                             attempt, exc.getMessage());
+                solver.shuffle = true;
             }
         }
     }
@@ -235,8 +244,8 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
         if (!initialized)
             throw new IllegalStateException();
 
-        Set<SubtypeConstraint> fixedSource = new HashSet<>();
-        Map<Type,List<Type>> domains = new HashMap<>();
+        fixedSource = new HashSet<>();
+        domains = new HashMap<>();
 
         for (SubtypeConstraint e : new HashSet<>(graph.edgeSet()))
         {
@@ -251,52 +260,64 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
             if (hierarchy.getInterfaces(source).contains(target))
                 continue;
 
-            try {
-                // Check if edge is already satisfied
-                if (!closure.isSubtypeOf(source, target))
-                    throw new UnsatisfiableStateException();
+            SupertypeQuery supertypes = closure.querySupertypes(source);
 
+            // Check if edge is already satisfied
+            if (supertypes.includes(target)) {
                 // Remove transitively satisfied path-edge
                 graph.removeEdge(source, target);
-            } catch (IncompleteSupertypesException ign) {
-                // Add path-edge since it can be satisfied eventually
-                fixedSource.add(e);
+                continue;
+            }
 
-                // Compute Projections
-                try {
-                    // Must include all supertypes, including classes
-                    closure.getAllSupertypes(source);
+            if (supertypes.isComplete())
+                throw new UnsatisfiableStateException();
 
-                    // No phantom projections => insolvable constraint
-                    throw new InsolvableConstraintException(e);
+            // Add path-edge since it can be satisfied eventually
+            fixedSource.add(e);
 
-                } catch (IncompleteSupertypesException exc) {
-                    List<Type> projections = new ArrayList<>();
-                    
-                    assert !exc.getSupertypes().isEmpty();
+            // Compute Projections (must include all supertypes,
+            // including classes)
+            List<Type> projections = new ArrayList<>();
 
-                    for (Type t : exc.getSupertypes())
-                        if (!hierarchy.contains(t))
-                            projections.add(t);
-
-                    // Phantom superclass might be missing, if no other interface
-                    // constraints were associated with it.
-                    // We can just add the relevant vertex into the iface-graph.
-                    for (Type t : projections)
-                        if (!graph.containsVertex(t)) {
-                            graph.addVertex(t);
-                            break;
-                        }
-
-                    for (Type t : projections)
-                        assert graph.containsVertex(t) : t;
-                    
-                    domains.put(source, projections);
+            for (Type t : supertypes.getSupertypes())
+                if (!hierarchy.contains(t))
+                    projections.add(t);
+
+            assert !projections.isEmpty();
+
+            // Phantom superclass might be missing, if no other interface
+            // constraints were associated with it.
+            // We can just add the relevant vertex into the iface-graph.
+            for (Type t : projections)
+                if (!graph.containsVertex(t)) {
+                    graph.addVertex(t);
+                    break;
                 }
-            }
+
+            for (Type t : projections)
+                assert graph.containsVertex(t) : t;
+
+            domains.put(source, projections);
         }
 
-        ifaceSolver = new LayeringSolver<Type,SubtypeConstraint>(graph, fixedSource, domains, minimize) {
+        // A source must be solved along with its projections
+        solveInterfaceGraph(graph, domains);
+        
+        // ifaceSolver = new RecursiveSolver(graph, minimize).solve();
+    }
+
+    @Override
+    protected MultipleInheritanceSolver<Type,SubtypeConstraint> solveInterfaceComponent(
+        DirectedGraph<Type,SubtypeConstraint> component)
+        throws UnsatisfiableStateException
+    {
+        Set<SubtypeConstraint> special = new HashSet<>();
+
+        for (SubtypeConstraint e : component.edgeSet())
+            if (fixedSource.contains(e))
+                special.add(e);
+
+        return new LayeringSolver<Type,SubtypeConstraint>(component, special, domains, minimize) {
             @Override 
             protected boolean removableEdge(Type source, Type target)
             {
@@ -306,16 +327,21 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
                 return super.removableEdge(source, target);
             }
         }.solve();
-        
-        // ifaceSolver = new RecursiveSolver(graph, minimize).solve();
     }
 
     /////////////////////// Solution Synthesis ///////////////////////
 
     protected void synthesize()
     {
-        Map<Type,Type> classSolution = classSolver.getSolution();
-        Map<Type,List<Type>> ifaceSolution = ifaceSolver.getSolution();
+        Map<Type,Type> classSolution = new HashMap<>();
+        Map<Type,List<Type>> ifaceSolution = new HashMap<>();
+
+        // Merge the solutions of all components
+        for (SingleInheritanceSolver<Type,SubtypeConstraint> s : classSolvers)
+            classSolution.putAll(s.getSolution());
+
+        for (MultipleInheritanceSolver<Type,SubtypeConstraint> s : ifaceSolvers)
+            ifaceSolution.putAll(s.getSolution());
 
         // Add interface graph to output
         for (Map.Entry<Type,List<Type>> entry : ifaceSolution.entrySet())
@@ -391,6 +417,48 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
         public Type getRoot() { return root; }
     }
 
+    private class ClassGraphSolver extends SingleInheritanceSolver<Type,SubtypeConstraint>
+    {
+        private final Random rand = new Random(SEED);
+        private boolean shuffle = false;
+
+        ClassGraphSolver(DirectedGraph<Type,SubtypeConstraint> graph)
+        { super(graph, OBJECT); }
+
+        @Override
+        protected Deque<Type> order(Set<Type> unconstrained, Type parent)
+        {
+            Deque<Type> ordered = new LinkedList<>();
+            List<Type> rest = new ArrayList<>();
+
+            // Place known types first, since their superclass is fixed
+            for (Type t : unconstrained)
+                if (hierarchy.contains(t))
+                {
+                    Type sc = hierarchy.getSuperclass(t);
+
+                    if (!sc.equals(parent)) {
+                        SubtypeConstraint impliedEdge = _graph.getEdgeFactory().
+                            createEdge(t, parent);
+
+                        throw new CrossoverConstraintException(impliedEdge, sc);
+                    }
+                    ordered.addLast(t);
+                } else {
+                    rest.add(t);
+                }
+
+            // Order the remaining nodes by name, unless retrying
+            if (shuffle)
+                Collections.shuffle(rest, rand);
+            else
+                Collections.sort(rest, BY_NAME);
+
+            ordered.addAll(rest);
+            return ordered;
+        }
+    }
+
     private class RecursiveSolver extends MultipleInheritanceSolver<Type,SubtypeConstraint>
     {
         private final Map<Type,List<Type>> domains = new HashMap<>();
@@ -407,19 +475,20 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
 
         private List<Type> domainOf(Type source) {
             if (!domains.containsKey(source)) {
-                try {
-                    closure.getAllSupertypes(source);
+                SupertypeQuery supertypes = closure.querySupertypes(source);
+
+                if (supertypes.isComplete()) {
                     domains.put(source, Collections.<Type>emptyList());
-                } catch (IncompleteSupertypesException exc) {
+                } else {
                     List<Type> domain = new ArrayList<>();
 
-                    for (Type t : exc.getSupertypes())
+                    for (Type t : supertypes.getSupertypes())
                         if (!hierarchy.contains(t))
                             domain.add(t);
 
                     assert !domain.isEmpty();
                     domains.put(source, domain);
-                } 
+                }
             }
             return domains.get(source);
         }
@@ -449,13 +518,16 @@ public class BasicSolver extends InterfaceSolver<Type,SubtypeConstraint,ClassHie
                 graph.removeEdge(source, target);
 
                 // Check if edge is already satisfied
-                try {
-                    if (!closure.isSubtypeOf(source, target))
-                        throw new UnsatisfiableStateException();
-                } catch (IncompleteSupertypesException ign) {
-                    // Add constraint since it can be satisfied eventually
-                    constraints.add(new Pair<>(source, target));
-                }
+                SupertypeQuery supertypes = closure.querySupertypes(source);
+
+                if (supertypes.includes(target))
+                    continue;
+
+                if (supertypes.isComplete())
+                    throw new UnsatisfiableStateException();
+
+                // Add constraint since it can be satisfied eventually
+                constraints.add(new Pair<>(source, target));
             }
 
             if (!solveAux(graph))
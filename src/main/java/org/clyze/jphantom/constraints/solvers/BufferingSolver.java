@@ -0,0 +1,78 @@
+package org.clyze.jphantom.constraints.solvers;
+
+import java.util.*;
+import org.clyze.jphantom.constraints.*;
+import org.objectweb.asm.Type;
+
+/**
+ * A solver that records the constraints it receives, instead of
+ * forwarding them, until they are drained and replayed to the
+ * underlying solver.
+ *
+ * Each instance is confined to a single thread, so that constraint
+ * extractors can run concurrently, while the underlying solver still
+ * receives their constraints in a fixed order.
+ */
+public class BufferingSolver extends ForwardingSolver
+{
+    private List<Constraint> buffer = new ArrayList<>();
+
+    public BufferingSolver(TypeConstraintSolver solver) {
+        super(solver);
+    }
+
+    /**
+     * Returns the constraints recorded so far, in order, and clears
+     * the buffer.
+     */
+    public List<Constraint> drain()
+    {
+        List<Constraint> drained = buffer;
+        buffer = new ArrayList<>();
+        return drained;
+    }
+
+    /**
+     * Feeds some drained constraints to the given solver, in order.
+     */
+    public static void replay(List<Constraint> constraints, TypeConstraintSolver solver)
+    {
+        for (Constraint c : constraints)
+            c.accept(solver);
+    }
+
+    @Override
+    public TypeConstraintSolver solve() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void visit(IsanInterfaceConstraint constraint) {
+        buffer.add(constraint);
+    }
+
+    @Override
+    public void visit(IsaClassConstraint constraint) {
+        buffer.add(constraint);
+    }
+
+    @Override
+    public void visit(SubtypeConstraint constraint) {
+        buffer.add(constraint);
+    }
+
+    @Override
+    public void markClass(Type vertex) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void markInterface(Type vertex) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addConstraintEdge(Type source, Type target) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -1,7 +1,9 @@
 package org.clyze.jphantom.constraints.solvers;
 
 import org.clyze.jphantom.util.Factory;
+import org.clyze.jphantom.util.UnionFind;
 import java.util.*;
+import java.util.concurrent.*;
 import org.jgrapht.*;
 import org.jgrapht.graph.*;
 
@@ -10,14 +12,16 @@ public abstract class InterfaceSolver<V,E,S> extends AbstractSolver<V,E,S>
     private final Strategy<V,E> strategy;
     private final V root;
     protected final boolean minimize;
-    protected SingleInheritanceSolver<V,E> classSolver;
-    protected MultipleInheritanceSolver<V,E> ifaceSolver;
+    private final int threads;
+    protected List<SingleInheritanceSolver<V,E>> classSolvers;
+    protected List<MultipleInheritanceSolver<V,E>> ifaceSolvers;
     private Set<V> classes;
 
     protected InterfaceSolver(Builder<V,E,S> builder)
     {
         super(builder.graph, builder.factory);
         this.minimize = builder.minimize;
+        this.threads = builder.threads;
         this.strategy = builder.strategy;
         this.root = builder.root;
     }
@@ -26,6 +30,7 @@ public abstract class InterfaceSolver<V,E,S> extends AbstractSolver<V,E,S>
 
     public static abstract class Builder<V,E,S> {
         private boolean minimize = true;
+        private int threads = 1;
         private Strategy<V,E> strategy;
         private final DirectedGraph<V,E> graph;
         private final Factory<S> factory;
@@ -49,6 +54,15 @@ public abstract class InterfaceSolver<V,E,S> extends AbstractSolver<V,E,S>
             return this;
         }
 
+        public Builder<V,E,S> threads(int threads)
+        {
+            if (threads < 1)
+                throw new IllegalArgumentException("" + threads);
+
+            this.threads = threads;
+            return this;
+        }
+
         public Builder<V,E,S> strategy(Strategy<V,E> strategy) {
             this.strategy = strategy;
             return this;
@@ -136,12 +150,7 @@ public abstract class InterfaceSolver<V,E,S> extends AbstractSolver<V,E,S>
 
         // Sanity Check
 
-        for (V v : graph.vertexSet())
-            if (classes.contains(v))
-                assert classSolver.getSolution().containsKey(v) || 
-                    v.equals(root) : v;
-            else
-                assert ifaceSolver.getSolution().containsKey(v) : v;
+        assert solvedClasses().containsAll(graph.vertexSet());
 
         // Synthesize solutions
 
@@ -149,18 +158,197 @@ public abstract class InterfaceSolver<V,E,S> extends AbstractSolver<V,E,S>
         classes = null;
     }
 
+    // The classes that are part of some partial solution
+    private Set<V> solvedClasses()
+    {
+        Set<V> solved = new HashSet<>();
+
+        solved.add(root);
+
+        for (SingleInheritanceSolver<V,E> solver : classSolvers)
+            solved.addAll(solver.getSolution().keySet());
+
+        return solved;
+    }
+
+    /**
+     * Solves the class graph, one weakly connected component at a
+     * time. The root is shared by all components, and does not
+     * connect them.
+     */
     protected void solveClassGraph(DirectedGraph<V,E> graph) 
         throws UnsatisfiableStateException
     {
-        classSolver = new SingleInheritanceSolver<>(graph, root);
-        classSolver.solve();
+        classSolvers = solveComponents(
+            graph, root, Collections.<V,List<V>>emptyMap(),
+            new ComponentSolver<V,E,SingleInheritanceSolver<V,E>>() {
+                @Override
+                public SingleInheritanceSolver<V,E> solve(DirectedGraph<V,E> component)
+                    throws UnsatisfiableStateException
+                {
+                    return solveClassComponent(component);
+                }
+            });
+    }
+
+    /**
+     * Solves the interface graph, one weakly connected component at a
+     * time. Each source vertex is in the same component as the
+     * vertices it is linked to, even if no edge connects them.
+     */
+    protected void solveInterfaceGraph(
+        DirectedGraph<V,E> graph, Map<V,? extends Collection<V>> links)
+        throws UnsatisfiableStateException
+    {
+        ifaceSolvers = solveComponents(
+            graph, null, links,
+            new ComponentSolver<V,E,MultipleInheritanceSolver<V,E>>() {
+                @Override
+                public MultipleInheritanceSolver<V,E> solve(DirectedGraph<V,E> component)
+                    throws UnsatisfiableStateException
+                {
+                    return solveInterfaceComponent(component);
+                }
+            });
     }
 
     protected void solveInterfaceGraph(DirectedGraph<V,E> graph)
         throws UnsatisfiableStateException
     {
-        ifaceSolver = new MultipleInheritanceSolver<>(graph, minimize);
-        ifaceSolver.solve();
+        solveInterfaceGraph(graph, Collections.<V,List<V>>emptyMap());
+    }
+
+    /**
+     * Solves a single component of the class graph, that includes the
+     * root. Components may be solved concurrently.
+     */
+    protected SingleInheritanceSolver<V,E> solveClassComponent(DirectedGraph<V,E> component)
+        throws UnsatisfiableStateException
+    {
+        return new SingleInheritanceSolver<>(component, root).solve();
+    }
+
+    /**
+     * Solves a single component of the interface graph. Components
+     * may be solved concurrently.
+     */
+    protected MultipleInheritanceSolver<V,E> solveInterfaceComponent(DirectedGraph<V,E> component)
+        throws UnsatisfiableStateException
+    {
+        return new MultipleInheritanceSolver<>(component, minimize).solve();
+    }
+
+    ////////////////// Component Solving ///////////////////
+
+    protected interface ComponentSolver<V,E,T>
+    {
+        T solve(DirectedGraph<V,E> component) throws UnsatisfiableStateException;
+    }
+
+    private <T> List<T> solveComponents(
+        DirectedGraph<V,E> graph,
+        V shared,
+        Map<V,? extends Collection<V>> links,
+        final ComponentSolver<V,E,T> solver)
+        throws UnsatisfiableStateException
+    {
+        final List<DirectedGraph<V,E>> components = split(graph, shared, links);
+        List<T> solutions = new ArrayList<>(components.size());
+
+        if (threads == 1 || components.size() < 2)
+        {
+            for (DirectedGraph<V,E> component : components)
+                solutions.add(solver.solve(component));
+
+            return solutions;
+        }
+
+        List<Callable<T>> tasks = new ArrayList<>(components.size());
+
+        for (final DirectedGraph<V,E> component : components)
+        {
+            tasks.add(new Callable<T>() {
+                    @Override
+                    public T call() throws UnsatisfiableStateException {
+                        return solver.solve(component);
+                    }
+                });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(threads, components.size()));
+
+        // Failures are rethrown in component order, as in a
+        // sequential run
+        try {
+            for (Future<T> future : pool.invokeAll(tasks))
+                solutions.add(future.get());
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exc);
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+
+            if (cause instanceof UnsatisfiableStateException)
+                throw (UnsatisfiableStateException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdown();
+        }
+
+        return solutions;
+    }
+
+    // Splits a graph into its weakly connected components, ignoring
+    // the shared vertex (if any), which is added to every component
+    private List<DirectedGraph<V,E>> split(
+        DirectedGraph<V,E> graph, V shared, Map<V,? extends Collection<V>> links)
+    {
+        UnionFind<V> components = new UnionFind<>();
+
+        for (V v : graph.vertexSet())
+            if (!v.equals(shared))
+                components.find(v);
+
+        for (E e : graph.edgeSet())
+        {
+            V source = graph.getEdgeSource(e);
+            V target = graph.getEdgeTarget(e);
+
+            if (!source.equals(shared) && !target.equals(shared))
+                components.union(source, target);
+        }
+
+        for (Map.Entry<V,? extends Collection<V>> entry : links.entrySet())
+            for (V v : entry.getValue()) {
+                assert graph.containsVertex(v) : v;
+                components.union(entry.getKey(), v);
+            }
+
+        List<DirectedGraph<V,E>> result = new ArrayList<>();
+
+        for (Set<V> vertices : components.sets().values())
+        {
+            DirectedGraph<V,E> component =
+                new SimpleDirectedGraph<>(graph.getEdgeFactory());
+
+            if (shared != null)
+                component.addVertex(shared);
+
+            for (V v : vertices)
+                component.addVertex(v);
+
+            for (V v : vertices)
+                for (E e : graph.outgoingEdgesOf(v))
+                    component.addEdge(v, graph.getEdgeTarget(e), e);
+
+            result.add(component);
+        }
+
+        return result;
     }
 
     protected abstract void synthesize();
@@ -2,7 +2,6 @@ package org.clyze.jphantom.constraints.solvers;
 
 import java.util.*;
 import org.jgrapht.*;
-import static com.google.common.collect.Iterables.concat;
 
 public abstract class LayeringSolver<V,E> extends MultipleInheritanceSolver<V,E>
 {
@@ -34,77 +33,113 @@ public abstract class LayeringSolver<V,E> extends MultipleInheritanceSolver<V,E>
         return projections.get(source);
     }
 
-    private Map<V,Integer> stratify(final DirectedGraph<V,E> graph) throws UnsatisfiableStateException
+    // Computes the stratum of every vertex: the length of the longest
+    // path that ends at it. A special edge may also start from the
+    // projection of its source that is stratified first, whichever
+    // is longer. Vertices are stratified by a single topological
+    // traversal, in order of increasing stratum; the vertices that
+    // are never reached lie on a cycle.
+    private int[] stratify(final DirectedGraph<V,E> graph, Map<V,Integer> ids)
+        throws UnsatisfiableStateException
     {
-        Set<E> pathEdges = new HashSet<>(graph.edgeSet());
-        Set<E> specialEdges = new HashSet<>();
-        Set<V> next = graph.vertexSet();
+        final int n = ids.size();
 
-        List<Set<V>> strata = new LinkedList<>(Collections.singletonList(next));
+        // Sources of special edges, indexed by their projections,
+        // in compressed sparse row form
+        Set<V> sources = new LinkedHashSet<>();
 
-        while(true)
+        for (E e : special)
+            sources.add(graph.getEdgeSource(e));
+
+        int[] offsets = new int[n + 1];
+
+        for (V source : sources)
+            for (V proj : projectionsOf(source))
+                offsets[ids.get(proj) + 1]++;
+
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+
+        int[] dependents = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+
+        for (V source : sources)
+            for (V proj : projectionsOf(source))
+                dependents[fill[ids.get(proj)]++] = ids.get(source);
+
+        // Stratify vertices without incoming edges first
+
+        List<V> vertices = new ArrayList<>(Collections.<V>nCopies(n, null));
+        int[] strata = new int[n];
+        int[] pending = new int[n];
+        int[] firstProjection = new int[n];
+        BitSet done = new BitSet(n);
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+
+        Arrays.fill(firstProjection, -1);
+
+        for (Map.Entry<V,Integer> entry : ids.entrySet()) {
+            V v = entry.getKey();
+            int id = entry.getValue();
+
+            vertices.set(id, v);
+
+            if ((pending[id] = graph.inDegreeOf(v)) == 0)
+                queue[tail++] = id;
+        }
+
+        while (head < tail)
         {
-            Set<V> prev = next;
-            next = new HashSet<>();
-
-            strata.add(next);
-            
-            for (E e : concat(pathEdges, specialEdges))
-                next.add(graph.getEdgeTarget(e));
-
-            if (next.isEmpty())
-                break;
-            else if (next.size() == prev.size())
-                throw new UnsatisfiableStateException();
-            else
-                assert next.size() < prev.size();
-
-            for (Iterator<E> it = pathEdges.iterator(); it.hasNext();)
-            {
-                E e = it.next();
-                    
-                V source = graph.getEdgeSource(e);
-                V target = graph.getEdgeTarget(e);
-                    
-                if (next.contains(source)) {
-                    assert next.contains(target); 
-                } else {
-                    it.remove();
+            int id = queue[head++];
+            V v = vertices.get(id);
 
-                    if (special.contains(e))
-                        specialEdges.add(e);
-                }
-            }
+            done.set(id);
+
+            // Release outgoing edges, except for special edges whose
+            // source has no stratified projection yet
+            for (E e : graph.outgoingEdgesOf(v))
+                if (firstProjection[id] >= 0 || !special.contains(e))
+                    tail = release(graph.getEdgeTarget(e), ids, strata, pending, queue, tail, strata[id]);
 
-            for (Iterator<E> it = specialEdges.iterator(); it.hasNext();)
+            // Release the special edges of sources that this vertex is
+            // the first stratified projection of
+            for (int i = offsets[id]; i < offsets[id + 1]; i++)
             {
-                E e = it.next();
-                V source = graph.getEdgeSource(e);
-                V target = graph.getEdgeTarget(e);
-                
-                for (V proj : projectionsOf(source))
-                    if (!next.contains(proj)) {
-                        it.remove();
-                        break;
-                    }
+                int dep = dependents[i];
+
+                if (firstProjection[dep] >= 0)
+                    continue;
+
+                firstProjection[dep] = strata[id];
+
+                if (!done.get(dep))
+                    continue;
+
+                for (E e : graph.outgoingEdgesOf(vertices.get(dep)))
+                    if (special.contains(e))
+                        tail = release(graph.getEdgeTarget(e), ids, strata, pending, queue, tail, strata[id]);
             }
         }
 
-        Map<V,Integer> strataValues = new HashMap<>();
+        if (tail < n)
+            throw new UnsatisfiableStateException();
 
-        for (ListIterator<Set<V>> it = strata.listIterator(); it.hasNext();)
-        {
-            int i = it.nextIndex();
-            Set<V> stratum = it.next();
+        return strata;
+    }
 
-            for(V v : stratum)
-                strataValues.put(v, i);
-        }
-        
-        for (V v : graph.vertexSet())
-            assert strataValues.containsKey(v);
+    // Releases an incoming edge of a vertex, and queues the vertex if
+    // it was the last one. Returns the new tail of the queue.
+    private static <V> int release(
+        V target, Map<V,Integer> ids, int[] strata, int[] pending, int[] queue, int tail, int stratum)
+    {
+        int id = ids.get(target);
 
-        return strataValues;
+        if (--pending[id] == 0) {
+            strata[id] = stratum + 1;
+            queue[tail++] = id;
+        }
+        return tail;
     }
 
     @Override
@@ -115,7 +150,12 @@ public abstract class LayeringSolver<V,E> extends MultipleInheritanceSolver<V,E>
     @Override
     protected void solve(DirectedGraph<V,E> graph) throws UnsatisfiableStateException
     {
-        Map<V,Integer> strata = stratify(graph);
+        Map<V,Integer> ids = new HashMap<>();
+
+        for (V v : graph.vertexSet())
+            ids.put(v, ids.size());
+
+        int[] strata = stratify(graph, ids);
 
     DIRECT:
         for (E e : special) {
@@ -123,8 +163,8 @@ public abstract class LayeringSolver<V,E> extends MultipleInheritanceSolver<V,E>
             V target = graph.getEdgeTarget(e);
 
             for (V proj : projectionsOf(source)) {
-                int pStratum = strata.get(proj);
-                int tStratum = strata.get(target);
+                int pStratum = strata[ids.get(proj)];
+                int tStratum = strata[ids.get(target)];
 
                 if (pStratum < tStratum) {
                     graph.removeEdge(source, target);
@@ -3,9 +3,6 @@ package org.clyze.jphantom.constraints.solvers;
 import org.clyze.jphantom.util.MapFactory;
 import java.util.*;
 import org.jgrapht.*;
-import org.jgrapht.graph.*;
-import org.jgrapht.alg.CycleDetector;
-import org.jgrapht.alg.TransitiveClosure;
 import static org.jgrapht.Graphs.*;
 
 public class MultipleInheritanceSolver<V,E> extends AbstractSolver<V,E,Map<V,List<V>>>
@@ -49,42 +46,87 @@ public class MultipleInheritanceSolver<V,E> extends AbstractSolver<V,E,Map<V,Lis
     @Override
     protected void solve(DirectedGraph<V,E> graph) throws UnsatisfiableStateException
     {
-        // Check for cycles in the interface graph
-        if (new CycleDetector<>(graph).detectCycles())
-            throw new GraphCycleException();
+        // Check for cycles in the interface graph, and
+        // remove redundant edges
+        reduce(graph);
+
+        // Create solution
+        for (V v : graph.vertexSet())
+            solution.put(v, successorListOf(graph, v));
+    }
 
-        // Remove redundant edges
-        if (minimize) {
-            // Compute transitive closure
-            SimpleDirectedGraph<V,E> closure = new SimpleDirectedGraph<>(factory);
+    // Visits the vertices in reverse topological order, computing the
+    // vertices reachable from each one as a bitset over vertex ids.
+    // An edge is redundant if its target can also be reached through
+    // another successor of its source. The bitset of a vertex is
+    // dropped as soon as all of its predecessors have been visited.
+    // Any vertex that is never visited lies on a cycle.
+    private void reduce(DirectedGraph<V,E> graph) throws GraphCycleException
+    {
+        List<V> vertices = new ArrayList<>(graph.vertexSet());
+        Map<V,Integer> ids = new HashMap<>();
+        final int n = vertices.size();
+
+        for (V v : vertices)
+            ids.put(v, ids.size());
+
+        int[] unvisitedSuccessors = new int[n];
+        int[] unvisitedPredecessors = new int[n];
+        BitSet[] reachable = new BitSet[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
 
-            addGraph(closure, graph);
-            TransitiveClosure.INSTANCE.closeSimpleDirectedGraph(closure);
+        // Start from the vertices without successors
+        for (int id = 0; id < n; id++) {
+            V v = vertices.get(id);
+
+            unvisitedPredecessors[id] = graph.inDegreeOf(v);
+
+            if ((unvisitedSuccessors[id] = graph.outDegreeOf(v)) == 0)
+                queue[tail++] = id;
+        }
 
-            for (E e : new HashSet<>(graph.edgeSet()))
-            {
-                V source = graph.getEdgeSource(e);
-                V target = graph.getEdgeTarget(e);
+        while (head < tail)
+        {
+            int id = queue[head++];
+            V v = vertices.get(id);
+            List<V> successors = successorListOf(graph, v);
 
-                for (V neighbor : successorListOf(graph, source))
-                {
-                    if (neighbor.equals(target))
-                        continue;
+            if (minimize) {
+                BitSet reach = new BitSet(n);
 
-                    if (!removableEdge(source, target))
-                        continue;
+                // Vertices reachable through some successor
+                for (V s : successors)
+                    reach.or(reachable[ids.get(s)]);
 
-                    if (closure.containsEdge(neighbor, target)) {
-                        graph.removeEdge(source, target);
-                        break;
-                    }
+                for (V t : successors)
+                    if (reach.get(ids.get(t)) && removableEdge(v, t))
+                        graph.removeEdge(v, t);
+
+                for (V s : successors)
+                    reach.set(ids.get(s));
+
+                reachable[id] = reach;
+
+                for (V s : successors) {
+                    int sid = ids.get(s);
+
+                    if (--unvisitedPredecessors[sid] == 0)
+                        reachable[sid] = null;
                 }
             }
+
+            // Visit the predecessors whose successors have all been visited
+            for (E e : graph.incomingEdgesOf(v)) {
+                int pid = ids.get(graph.getEdgeSource(e));
+
+                if (--unvisitedSuccessors[pid] == 0)
+                    queue[tail++] = pid;
+            }
         }
 
-        // Create solution
-        for (V v : graph.vertexSet())
-            solution.put(v, successorListOf(graph, v));
+        if (tail < n)
+            throw new GraphCycleException();
     }
 
     protected final boolean removableEdge(E edge, DirectedGraph<V,E> graph) {
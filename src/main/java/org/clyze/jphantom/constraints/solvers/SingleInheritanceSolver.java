@@ -1,10 +1,9 @@
 package org.clyze.jphantom.constraints.solvers;
 
 import org.clyze.jphantom.util.MapFactory;
+import org.clyze.jphantom.util.UnionFind;
 import java.util.*;
 import org.jgrapht.*;
-import org.jgrapht.graph.*;
-import org.jgrapht.alg.ConnectivityInspector;
 
 public class SingleInheritanceSolver<V,E> extends AbstractSolver<V,E,Map<V,V>>
 {
@@ -38,32 +37,37 @@ public class SingleInheritanceSolver<V,E> extends AbstractSolver<V,E,Map<V,V>>
         _graph.addEdge(target, root);        
     }
     
-    private DirectedGraph<V,E> getComponent(DirectedGraph<V,E> graph, V node)
-    {
-        UndirectedGraph<V,E> undirectedView = new AsUndirectedGraph<>(graph);
-
-        Set<V> nodes = new ConnectivityInspector<>(undirectedView).connectedSetOf(node);
-        DirectedGraph<V,E> subgraph = new DirectedSubgraph<>(graph, nodes, null);
-        DirectedGraph<V,E> result = new SimpleDirectedGraph<>(graph.getEdgeFactory());
-        Graphs.addGraph(result, subgraph);
-
-        return result;
-    }
-
-    private void placeUnder(V top, DirectedGraph<V,E> graph)
+    // Places the unconstrained nodes of a component under its top
+    // vertex, and recurses into their own components. The vertices of
+    // each component are split into weakly connected components once,
+    // while the graph itself is only ever shrunk, never copied.
+    private void placeUnder(V top, Set<V> nodes, DirectedGraph<V,E> graph)
         throws GraphCycleException
     {
         // Remove vertex and remaining incoming edges
         graph.removeVertex(top);
+        nodes.remove(top);
 
-        // Compute unconstrained nodes
+        // Compute unconstrained nodes and connected components.
+        // No edge crosses the component boundary, so the edges of
+        // the whole graph can be used.
 
         final Set<V> unconstrained = new HashSet<>();
+        final UnionFind<V> components = new UnionFind<>();
+
+        for (V vertex : nodes)
+        {
+            components.find(vertex);
 
-        for (V vertex : graph.vertexSet())
             if (graph.outDegreeOf(vertex) == 0)
                 unconstrained.add(vertex);
 
+            for (E e : graph.outgoingEdgesOf(vertex))
+                components.union(vertex, graph.getEdgeTarget(e));
+        }
+
+        Map<V,Set<V>> subsets = components.sets();
+
         // Determining the unconstrained node order
         Deque<V> ul = order(unconstrained, top);
 
@@ -72,33 +76,26 @@ public class SingleInheritanceSolver<V,E> extends AbstractSolver<V,E,Map<V,V>>
             // Remove an unconstrained node
             V next = ul.removeFirst();
 
+            Set<V> subset = subsets.remove(components.find(next));
+
             // Skip if next was visited in another component
             // of one of its neighbors
-            if (!graph.containsVertex(next))
+            if (subset == null)
                 continue;
 
             // Add subtype edge
             assert !solution.containsKey(next);
             solution.put(next, top);
 
-            DirectedGraph<V,E> subgraph = getComponent(graph, next);
-
-            // Remove subgraph from constraint graph
-
-            graph.removeAllEdges(subgraph.edgeSet());
-
-            for (V vertex : subgraph.vertexSet()) {
-                assert graph.edgesOf(vertex).isEmpty();
-                graph.removeVertex(vertex);
-            }
-
             // Recursion
-            placeUnder(next, subgraph);
+            placeUnder(next, subset, graph);
         }
 
         // Sanity check
-        if (!graph.edgeSet().isEmpty())
-            throw new GraphCycleException();
+        for (Set<V> subset : subsets.values())
+            for (V vertex : subset)
+                if (graph.outDegreeOf(vertex) > 0)
+                    throw new GraphCycleException();
     }
 
     @Override
@@ -111,7 +108,7 @@ public class SingleInheritanceSolver<V,E> extends AbstractSolver<V,E,Map<V,V>>
     @Override
     protected void solve(DirectedGraph<V,E> graph) throws UnsatisfiableStateException
     {
-        placeUnder(root, graph);
+        placeUnder(root, new LinkedHashSet<>(graph.vertexSet()), graph);
         assert graph.vertexSet().isEmpty();
     }
 
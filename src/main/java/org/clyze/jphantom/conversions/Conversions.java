@@ -1,6 +1,8 @@
 package org.clyze.jphantom.conversions;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.clyze.jphantom.*;
 import org.clyze.jphantom.util.Pair;
 import org.objectweb.asm.Type;
@@ -92,16 +94,24 @@ public class Conversions implements Types {
 
     // Cache
 
-    private static final Map<Pair<Type,Type>,Conversion> cache = new HashMap<>();
+    // Shared by extractors that may run concurrently
+    private static final ConcurrentMap<Pair<Type,Type>,Conversion> cache =
+        new ConcurrentHashMap<>();
 
     public static Conversion getAssignmentConversion(Type from, Type to)
     {
         Pair<Type,Type> pair = new Pair<>(from, to);
 
-        if (!cache.containsKey(pair))
-            cache.put(pair, newAssignmentConversion(pair));
+        Conversion conv = cache.get(pair);
 
-        return cache.get(pair);
+        if (conv == null) {
+            Conversion fresh = newAssignmentConversion(pair);
+            conv = cache.putIfAbsent(pair, fresh);
+
+            if (conv == null)
+                conv = fresh;
+        }
+        return conv;
     }
 
     public static Conversion newAssignmentConversion(Pair<Type,Type> pair)
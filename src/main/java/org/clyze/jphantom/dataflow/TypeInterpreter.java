@@ -1,6 +1,8 @@
 package org.clyze.jphantom.dataflow;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.clyze.jphantom.*;
 import org.clyze.jphantom.hier.*;
 import org.clyze.jphantom.hier.closure.*;
@@ -11,7 +13,8 @@ import org.objectweb.asm.Type;
 
 public class TypeInterpreter extends BasicInterpreter implements Opcodes, Types
 {
-    private static final Map<Type,BasicValue> values = new HashMap<>();
+    // Shared by interpreters that may run concurrently
+    private static final ConcurrentMap<Type,BasicValue> values = new ConcurrentHashMap<>();
     protected static final BasicValue NULL_VALUE = new BasicValue(BasicInterpreter.NULL_TYPE);
 
     static {
@@ -31,9 +34,16 @@ public class TypeInterpreter extends BasicInterpreter implements Opcodes, Types
 
     public static final BasicValue getValue(final Type type)
     {
-        if (!values.containsKey(type))
-            values.put(type, new BasicValue(type));
-        return values.get(type);
+        BasicValue value = values.get(type);
+
+        if (value == null) {
+            BasicValue fresh = new BasicValue(type);
+            value = values.putIfAbsent(type, fresh);
+
+            if (value == null)
+                value = fresh;
+        }
+        return value;
     }
 
     @Override
@@ -41,6 +41,10 @@ public class FieldSignature extends Signature
         return Type.getType(desc);
     }
 
+    public String getName() {
+        return name;
+    }
+
     public String getDescriptor() {
         return desc;
     }
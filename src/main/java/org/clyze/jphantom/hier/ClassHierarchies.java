@@ -6,6 +6,7 @@ import java.util.jar.*;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
 import org.clyze.jphantom.Types;
 
 public class ClassHierarchies implements Opcodes, Types
@@ -14,9 +15,46 @@ public class ClassHierarchies implements Opcodes, Types
         throw new AssertionError();
     }
 
-    public static void loadSystemType(ClassHierarchy hierarchy, Class<?> clazz)
+    /**
+     * Adds a system type to a hierarchy, along with any of its
+     * supertypes that are missing.
+     *
+     * @return the types that were added, each after its supertypes
+     */
+    public static List<Type> loadSystemType(ClassHierarchy hierarchy, Class<?> clazz)
     {
-        new Importer(hierarchy, clazz.getClassLoader()).execute(Type.getType(clazz));
+        Importer importer = new Importer(hierarchy, clazz.getClassLoader());
+        importer.execute(Type.getType(clazz));
+        return importer.getImported();
+    }
+
+    /**
+     * Adds a library type to a hierarchy, along with any of its
+     * supertypes that are missing.
+     *
+     * @return the types that were added, each after its supertypes
+     */
+    public static List<Type> loadLibraryType(ClassHierarchy hierarchy, Type type)
+    {
+        Importer importer = new Importer(hierarchy, LibraryClassHierarchy.getInstance());
+        importer.execute(type);
+        return importer.getImported();
+    }
+
+    /**
+     * Returns an immutable copy of a class hierarchy, that can be
+     * read by many threads concurrently, or the hierarchy itself if
+     * it is already frozen.
+     */
+    public static FrozenClassHierarchy freeze(ClassHierarchy hierarchy)
+    {
+        if (hierarchy instanceof FrozenClassHierarchy)
+            return (FrozenClassHierarchy) hierarchy;
+
+        if (hierarchy instanceof CompactClassHierarchy)
+            return ((CompactClassHierarchy) hierarchy).freeze();
+
+        return new FrozenClassHierarchy(new CompactClassHierarchy(hierarchy));
     }
 
     public static Set<Type> unknownTypes(ClassHierarchy hierarchy)
@@ -55,7 +93,7 @@ public class ClassHierarchies implements Opcodes, Types
     public static ClassHierarchy fromJar(JarFile file) throws IOException
     {
         try {
-            ClassHierarchy hierarchy = new IncrementalClassHierarchy();
+            ClassHierarchy hierarchy = new CompactClassHierarchy();
 
             for (Enumeration<JarEntry> e = file.entries(); e.hasMoreElements();)
             {
@@ -71,26 +109,13 @@ public class ClassHierarchies implements Opcodes, Types
 
                 try (InputStream stream = file.getInputStream(entry)) {
                     ClassReader reader = new ClassReader(stream);
-                    String ifaceNames[] = reader.getInterfaces();
-
-                    // Compute Types
-
-                    Type clazz = Type.getObjectType(reader.getClassName());
-                    Type superclass = Type.getObjectType(reader.getSuperName());
-                    Type ifaces[] = new Type[ifaceNames.length];
-
-                    for (int i = 0; i < ifaces.length; i++)
-                        ifaces[i] = Type.getObjectType(ifaceNames[i]);
 
                     // Add type to hierarchy
-                    boolean isInterface = (reader.getAccess() & ACC_INTERFACE) != 0;
-
-                    if (isInterface) {
-                        hierarchy.addInterface(clazz, ifaces);
-                        assert superclass.equals(OBJECT);
-                    } else {
-                        hierarchy.addClass(clazz, superclass, ifaces);
-                    }
+                    addType(hierarchy,
+                            reader.getAccess(),
+                            reader.getClassName(),
+                            reader.getSuperName(),
+                            reader.getInterfaces());
                 }
             }
             return hierarchy;
@@ -98,4 +123,45 @@ public class ClassHierarchies implements Opcodes, Types
             file.close();
         }
     }
+
+    public static ClassHierarchy fromClassNodes(Iterable<ClassNode> nodes)
+    {
+        ClassHierarchy hierarchy = new CompactClassHierarchy();
+
+        for (ClassNode node : nodes)
+            addType(hierarchy,
+                    node.access,
+                    node.name,
+                    node.superName,
+                    node.interfaces.toArray(new String[0]));
+
+        return hierarchy;
+    }
+
+    private static void addType(
+        ClassHierarchy hierarchy,
+        int access,
+        String name,
+        String superName,
+        String[] ifaceNames)
+    {
+        // Compute Types
+
+        Type clazz = Type.getObjectType(name);
+        Type superclass = Type.getObjectType(superName);
+        Type ifaces[] = new Type[ifaceNames.length];
+
+        for (int i = 0; i < ifaces.length; i++)
+            ifaces[i] = Type.getObjectType(ifaceNames[i]);
+
+        // Add type to hierarchy
+        boolean isInterface = (access & ACC_INTERFACE) != 0;
+
+        if (isInterface) {
+            hierarchy.addInterface(clazz, ifaces);
+            assert superclass.equals(OBJECT);
+        } else {
+            hierarchy.addClass(clazz, superclass, ifaces);
+        }
+    }
 }
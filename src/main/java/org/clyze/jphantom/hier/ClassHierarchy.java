@@ -89,6 +89,18 @@ public interface ClassHierarchy extends Iterable<Type>, Types
 
         Set<Type> getAllSupertypes(Type obj) throws IncompleteSupertypesException;
 
+        /**
+         * Returns the same supertypes as {@link #getAllSupertypes(Type)},
+         * but reports whether some of them are missing in the result,
+         * instead of throwing an exception.
+         *
+         * @param obj an object type
+         * @throws IllegalArgumentException if the argument is not an object type
+         * @throws TypeNotPresentException if the class hierarchy does not contain 
+         *         this object type
+         */
+        SupertypeQuery querySupertypes(Type obj);
+
         boolean isSubtypeOf(Type type, Type supertype) 
             throws IncompleteSupertypesException;
 
@@ -0,0 +1,366 @@
+package org.clyze.jphantom.hier;
+
+import java.util.*;
+import org.clyze.jphantom.Types;
+import org.objectweb.asm.Type;
+
+/**
+ * A class hierarchy that stores its types by dense integer ids.
+ *
+ * Every type, including supertypes that have not been added yet, is
+ * given an id by a {@link TypeInterner}. The direct superclass of each
+ * type is then stored as an id in an {@code int[]}, and its direct
+ * interfaces as a contiguous range of ids in a single, shared
+ * {@code int[]} (as in a compressed sparse row adjacency). Since a
+ * type can only be added once, the range of each type is appended
+ * right after the previous one. Interfaces and contained types are
+ * recorded as bitsets over these ids.
+ *
+ * Types are iterated in the order they were added.
+ */
+public class CompactClassHierarchy extends AbstractClassHierarchy
+    implements Types
+{
+    ///////////////// Fields /////////////////
+
+    private final TypeInterner interner;
+    private final BitSet present = new BitSet();
+    private final BitSet interfaces = new BitSet();
+
+    // Indexed by id
+    private int[] superclass = new int[64];
+    private int[] ifaceStart = new int[64];
+    private int[] ifaceEnd = new int[64];
+
+    // Interface adjacency
+    private int[] ifaceIds = new int[64];
+    private int ifaceCount = 0;
+
+    // Ids of contained types, in the order they were added
+    private int[] added = new int[64];
+    private int size = 0;
+
+
+    ///////////////// Constructors /////////////////
+
+    public CompactClassHierarchy()
+    {
+        super();
+        this.interner = new TypeInterner();
+
+        // Add java.lang.Object
+        add(OBJECT, false, null, new Type[0]);
+    }
+
+    public CompactClassHierarchy(ClassHierarchy other)
+    {
+        this();
+
+        for (Type t : other) {
+            if (contains(t))
+                continue;
+
+            Set<Type> ifaces = other.getInterfaces(t);
+
+            add(t, other.isInterface(t),
+                other.getSuperclass(t), ifaces.toArray(new Type[ifaces.size()]));
+        }
+    }
+
+    // Exact copy of another hierarchy, given a copy of its interner,
+    // with every array trimmed to its contents
+    private CompactClassHierarchy(TypeInterner interner, CompactClassHierarchy other)
+    {
+        super();
+        this.interner = interner;
+
+        int n = other.interner.size();
+
+        this.present.or(other.present);
+        this.interfaces.or(other.interfaces);
+        this.superclass = Arrays.copyOf(other.superclass, n);
+        this.ifaceStart = Arrays.copyOf(other.ifaceStart, n);
+        this.ifaceEnd = Arrays.copyOf(other.ifaceEnd, n);
+        this.ifaceIds = Arrays.copyOf(other.ifaceIds, other.ifaceCount);
+        this.ifaceCount = other.ifaceCount;
+        this.added = Arrays.copyOf(other.added, other.size);
+        this.size = other.size;
+    }
+
+    ///////////////////////// Methods /////////////////////////
+
+    private void add(Type clazz, boolean iface, Type sc, Type[] ifaces)
+    {
+        int id = interner.intern(clazz);
+        int sid = (sc == null) ? -1 : interner.intern(sc);
+        int start = ifaceCount;
+
+        for (Type i : ifaces)
+        {
+            assert i != null;
+
+            int iid = interner.intern(i);
+
+            // Skip duplicates
+            if (indexOf(start, ifaceCount, iid) >= 0)
+                continue;
+
+            if (ifaceCount == ifaceIds.length)
+                ifaceIds = Arrays.copyOf(ifaceIds, 2 * ifaceCount);
+
+            ifaceIds[ifaceCount++] = iid;
+        }
+
+        ensureCapacity(interner.size());
+
+        superclass[id] = sid;
+        ifaceStart[id] = start;
+        ifaceEnd[id] = ifaceCount;
+        interfaces.set(id, iface);
+        present.set(id);
+
+        if (size == added.length)
+            added = Arrays.copyOf(added, 2 * size);
+
+        added[size++] = id;
+    }
+
+    private void ensureCapacity(int n)
+    {
+        if (n <= superclass.length)
+            return;
+
+        int capacity = Math.max(n, 2 * superclass.length);
+
+        superclass = Arrays.copyOf(superclass, capacity);
+        ifaceStart = Arrays.copyOf(ifaceStart, capacity);
+        ifaceEnd = Arrays.copyOf(ifaceEnd, capacity);
+    }
+
+    private int indexOf(int from, int to, int iid)
+    {
+        for (int i = from; i < to; i++)
+            if (ifaceIds[i] == iid)
+                return i;
+
+        return -1;
+    }
+
+    // Returns the id of a contained object type, checking the
+    // argument with a single lookup
+    private int containedId(Type obj)
+    {
+        int id = interner.idOf(checkedObject(obj));
+
+        if (id < 0 || !present.get(id))
+            throw new TypeNotPresentException(obj.getClassName(), null);
+
+        return id;
+    }
+
+    @Override
+    public Iterator<Type> iterator()
+    {
+        return new Iterator<Type>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Type next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return interner.typeOf(added[next++]);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void addClass(Type clazz, Type superclass, Type[] interfaces)
+    {
+        if (contains(clazz))
+            throw new IllegalArgumentException(clazz + " has already been added");
+
+        // Argument Checking
+
+        for (Type i : interfaces)
+            checkedInterface(i);
+
+        checkedClass(superclass);
+
+        // No graph cycle sanity check is done at this point
+
+        add(clazz, false, superclass, interfaces);
+    }
+
+    @Override
+    public void addInterface(Type iface, Type[] superInterfaces)
+    {
+        if (contains(iface))
+            throw new IllegalArgumentException(iface + " has already been added");
+
+        // Argument Checking
+
+        for (Type i : superInterfaces)
+            checkedInterface(i);
+
+        // No graph cycle sanity check is done at this point
+
+        add(iface, true, OBJECT, superInterfaces);
+    }
+
+    @Override
+    public final boolean isInterface(Type obj) {
+        return interfaces.get(containedId(obj));
+    }
+
+    @Override
+    public final boolean contains(Type obj)
+    {
+        int id = interner.idOf(checkedObject(obj));
+        return id >= 0 && present.get(id);
+    }
+
+    @Override
+    public Set<Type> getInterfaces(Type obj)
+    {
+        int id = containedId(obj);
+        return new InterfaceSet(ifaceStart[id], ifaceEnd[id]);
+    }
+
+    @Override
+    public Type getSuperclass(Type obj)
+    {
+        int sid = superclass[containedId(obj)];
+
+        // Sanity checks
+        assert sid >= 0 || obj.equals(OBJECT) : obj;
+
+        return sid < 0 ? null : interner.typeOf(sid);
+    }
+
+    /**
+     * Returns an immutable copy of this hierarchy, that can be read
+     * by many threads concurrently.
+     */
+    public FrozenClassHierarchy freeze() {
+        return new FrozenClassHierarchy(
+            new CompactClassHierarchy(new TypeInterner(interner), this));
+    }
+
+    ///////////////////////// Id Access /////////////////////////
+
+    /**
+     * Returns the id of a type, or {@code -1} if the type is neither
+     * contained in this hierarchy nor a supertype of a contained type.
+     */
+    public int idOf(Type obj) {
+        return interner.idOf(obj);
+    }
+
+    public Type typeOf(int id) {
+        return interner.typeOf(id);
+    }
+
+    /**
+     * Returns the number of ids assigned so far, i.e., an upper bound
+     * to every id of this hierarchy.
+     */
+    public int idCount() {
+        return interner.size();
+    }
+
+    public boolean contains(int id) {
+        return present.get(id);
+    }
+
+    public boolean isInterface(int id) {
+        return interfaces.get(id);
+    }
+
+    /**
+     * Returns the id of the direct superclass of a contained type, or
+     * {@code -1} in the case of {@code java.lang.Object}.
+     */
+    public int getSuperclass(int id) {
+        return superclass[id];
+    }
+
+    public int getInterfaceCount(int id) {
+        return ifaceEnd[id] - ifaceStart[id];
+    }
+
+    public int getInterface(int id, int index)
+    {
+        if (index < 0 || index >= getInterfaceCount(id))
+            throw new IndexOutOfBoundsException("" + index);
+
+        return ifaceIds[ifaceStart[id] + index];
+    }
+
+    // An unmodifiable view of a range of the interface adjacency
+    private class InterfaceSet extends AbstractSet<Type>
+    {
+        private final int start;
+        private final int end;
+
+        InterfaceSet(int start, int end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            if (!(o instanceof Type))
+                return false;
+
+            int id = interner.idOf((Type) o);
+
+            return id >= 0 && indexOf(start, end, id) >= 0;
+        }
+
+        @Override
+        public Iterator<Type> iterator()
+        {
+            return new Iterator<Type>() {
+                private int next = start;
+
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                @Override
+                public Type next()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+
+                    return interner.typeOf(ifaceIds[next++]);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.clyze.jphantom.hier;
+
+/**
+ * An immutable class hierarchy, backed by a private copy of a
+ * {@link CompactClassHierarchy} that nothing else can reach.
+ *
+ * The copy is never modified after construction and is held by a
+ * final field, so instances can be safely shared and read by any
+ * number of threads. Use {@link CompactClassHierarchy#freeze} or
+ * {@link ClassHierarchies#freeze} to obtain one.
+ */
+public class FrozenClassHierarchy extends UnmodifiableClassHierarchy
+{
+    FrozenClassHierarchy(CompactClassHierarchy copy) {
+        super(copy);
+    }
+}
@@ -10,6 +10,9 @@ public class Importer implements Command, Types
     private final ClassHierarchy target;
     private final ClassHierarchy source;
 
+    // Types added to the target, in the order they were added
+    private final List<Type> imported = new ArrayList<>();
+
     public Importer(ClassHierarchy target, ClassHierarchy source) {
         this.target = target;
         this.source = source;
@@ -27,6 +30,14 @@ public class Importer implements Command, Types
         return source;
     }
 
+    /**
+     * Returns the types that have been added to the target so far,
+     * each after all of its supertypes.
+     */
+    public List<Type> getImported() {
+        return Collections.unmodifiableList(imported);
+    }
+
     @Override
     public void execute()
     {
@@ -80,6 +91,8 @@ public class Importer implements Command, Types
                 target.addInterface(root, ifaces.toArray(new Type[0]));
             else
                 target.addClass(root, sc, ifaces.toArray(new Type[0]));
+
+            imported.add(root);
         }
     }
 }
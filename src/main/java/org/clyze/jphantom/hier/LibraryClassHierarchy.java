@@ -0,0 +1,305 @@
+package org.clyze.jphantom.hier;
+
+import java.io.*;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.clyze.jphantom.Types;
+import org.clyze.jphantom.classpath.*;
+import org.clyze.jphantom.util.BootstrapClassLoader;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only class hierarchy of library types, whose supertypes are
+ * read from the class file headers of a {@link ClassSource}.
+ *
+ * Unlike {@link SystemClassHierarchy}, no classes are loaded into the
+ * running JVM. Headers are parsed at most once per type; types that
+ * could not be found are remembered as well, so that repeated
+ * negative lookups are cheap.
+ *
+ * Alternatively, the hierarchy may be backed by a precomputed
+ * {@link JdkIndex}, in which case no JDK class files are read at all.
+ * Any class source given along with an index (e.g., the classpath) is
+ * only consulted for types that the index does not contain.
+ */
+public class LibraryClassHierarchy extends AbstractClassHierarchy
+    implements Opcodes, Types
+{
+    private static LibraryClassHierarchy instance;
+
+    private final ClassSource source;
+    private final JdkIndex index;
+    private final Map<Type,Header> headers = new ConcurrentHashMap<>();
+
+    // Sentinel for types not present in the source
+    private static final Header MISSING = new Header(0, null, new Type[0]);
+
+    private final static Logger logger =
+        LoggerFactory.getLogger(LibraryClassHierarchy.class);
+
+    public LibraryClassHierarchy(JdkIndex index, ClassSource source) {
+        this.index = index;
+        this.source = source;
+    }
+
+    public LibraryClassHierarchy(ClassSource source) {
+        this(null, source);
+    }
+
+    public LibraryClassHierarchy(JdkIndex index) {
+        this(index, null);
+    }
+
+    /**
+     * Returns the library hierarchy of the running JVM, backed by its
+     * {@code jrt:/} image or by the bootstrap class loader if the
+     * image is not modular.
+     */
+    public static synchronized LibraryClassHierarchy getInstance()
+    {
+        if (instance == null)
+            instance = new LibraryClassHierarchy(systemSource());
+
+        return instance;
+    }
+
+    /**
+     * Replaces the library hierarchy returned by {@link #getInstance()}.
+     */
+    public static synchronized void setInstance(LibraryClassHierarchy library) {
+        instance = library;
+    }
+
+    /**
+     * Returns the library hierarchy of the running JVM, backed by an
+     * index stored under the given directory. The index is built on
+     * first use.
+     */
+    public static LibraryClassHierarchy indexed(Path indexDir) throws IOException
+    {
+        String identity =
+            System.getProperty("java.vendor") + " " +
+            System.getProperty("java.runtime.version") + " " +
+            System.getProperty("java.home");
+
+        return create(systemSource(), identity, indexDir);
+    }
+
+    /**
+     * Returns the library hierarchy of some other JDK, given as its
+     * home directory, a directory of jmod files, or a single jar
+     * (e.g., rt.jar).
+     *
+     * @param jdk the location of the JDK class library
+     * @param indexDir the directory of precomputed indices, or
+     *        {@code null} if class files should be read directly
+     */
+    public static LibraryClassHierarchy forJdk(Path jdk, Path indexDir) throws IOException
+    {
+        return create(ClassSources.forJdk(jdk), ClassSources.identityOf(jdk), indexDir);
+    }
+
+    private static LibraryClassHierarchy create(ClassSource source, String identity, Path indexDir)
+        throws IOException
+    {
+        if (indexDir == null)
+            return new LibraryClassHierarchy(source);
+
+        if (!(source instanceof IndexableClassSource)) {
+            logger.warn("Cannot index class library: {}", source);
+            return new LibraryClassHierarchy(source);
+        }
+
+        return new LibraryClassHierarchy(
+            JdkIndex.openOrBuild(indexDir, identity, (IndexableClassSource) source));
+    }
+
+    private static ClassSource systemSource()
+    {
+        ClassSource source = JrtClassSource.system();
+
+        if (source != null)
+            return source;
+
+        // Non-modular run-time image; read its jars directly, if
+        // possible, so that it can be indexed
+        try {
+            return ClassSources.forJdk(
+                FileSystems.getDefault().getPath(System.getProperty("java.home")));
+        } catch (IOException exc) {
+            logger.debug("Could not locate run-time jars: {}", exc.toString());
+        }
+
+        return new ResourceClassSource(BootstrapClassLoader.v());
+    }
+
+    /**
+     * Returns a library hierarchy that also contains the types of the
+     * given class source (e.g., the classpath), unless they are
+     * shadowed by types of this hierarchy.
+     */
+    public LibraryClassHierarchy extend(ClassSource classpath)
+    {
+        ClassSource extended = (source == null) ? classpath :
+            new CompositeClassSource(Arrays.asList(source, classpath));
+
+        return new LibraryClassHierarchy(index, extended);
+    }
+
+    public ClassSource getSource() {
+        return source;
+    }
+
+    public JdkIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void addClass(Type clazz, Type superclass, Type[] interfaces)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addInterface(Type iface, Type[] superInterfaces)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean contains(Type obj) {
+        return header(checkedObject(obj)) != MISSING;
+    }
+
+    @Override
+    public boolean isInterface(Type obj) {
+        return (checkedHeader(obj).access & ACC_INTERFACE) != 0;
+    }
+
+    @Override
+    public Set<Type> getInterfaces(Type obj) {
+        return new HashSet<>(Arrays.asList(checkedHeader(obj).interfaces));
+    }
+
+    @Override
+    public Type getSuperclass(Type obj) {
+        return checkedHeader(obj).superclass;
+    }
+
+    @Override
+    public Iterator<Type> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Replays the class file of a library type to the given visitor.
+     *
+     * @throws TypeNotPresentException if the type is not a library type
+     */
+    public void accept(Type obj, ClassVisitor visitor, int flags) throws IOException
+    {
+        if (index != null && index.contains(obj.getInternalName())) {
+            index.accept(obj.getInternalName(), visitor);
+            return;
+        }
+
+        byte[] bytes = (source == null) ? null :
+            source.getClassFile(obj.getInternalName());
+
+        if (bytes == null)
+            throw new TypeNotPresentException(obj.getClassName(), null);
+
+        new ClassReader(bytes).accept(visitor, flags);
+    }
+
+    private Header checkedHeader(Type obj)
+    {
+        Header header = header(checkedObject(obj));
+
+        if (header == MISSING)
+            throw new TypeNotPresentException(obj.getClassName(), null);
+
+        return header;
+    }
+
+    private Header header(Type obj)
+    {
+        Header header = headers.get(obj);
+
+        if (header == null) {
+            header = readHeader(obj);
+            headers.put(obj, header);
+        }
+        return header;
+    }
+
+    private Header readHeader(Type obj)
+    {
+        String name = obj.getInternalName();
+
+        if (index != null && index.contains(name))
+            return header(index.getAccess(name),
+                          index.getSuperName(name),
+                          index.getInterfaces(name));
+
+        if (source == null)
+            return MISSING;
+
+        byte[] bytes;
+
+        try {
+            bytes = source.getClassFile(name);
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc);
+        }
+
+        if (bytes == null)
+            return MISSING;
+
+        // Only the header of the class file is parsed
+        ClassReader reader = new ClassReader(bytes);
+
+        return header(reader.getAccess(),
+                      reader.getSuperName(),
+                      reader.getInterfaces());
+    }
+
+    private static Header header(int access, String superName, String[] ifaceNames)
+    {
+        Type[] ifaces = new Type[ifaceNames.length];
+
+        for (int i = 0; i < ifaces.length; i++)
+            ifaces[i] = Type.getObjectType(ifaceNames[i]);
+
+        Type superclass;
+
+        if ((access & ACC_INTERFACE) != 0)
+            superclass = OBJECT;
+        else if (superName == null)
+            superclass = null;
+        else
+            superclass = Type.getObjectType(superName);
+
+        return new Header(access, superclass, ifaces);
+    }
+
+    private static class Header
+    {
+        final int access;
+        final Type superclass;
+        final Type[] interfaces;
+
+        Header(int access, Type superclass, Type[] interfaces) {
+            this.access = access;
+            this.superclass = superclass;
+            this.interfaces = interfaces;
+        }
+    }
+}
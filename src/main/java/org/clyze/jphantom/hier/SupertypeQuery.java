@@ -0,0 +1,56 @@
+package org.clyze.jphantom.hier;
+
+import java.util.*;
+import org.objectweb.asm.Type;
+
+/**
+ * The supertypes of an object type, as computed by a snapshot of a
+ * class hierarchy, along with whether they are complete.
+ *
+ * This is the exception-free counterpart of
+ * {@link ClassHierarchy.Snapshot#getAllSupertypes(Type)}: an incomplete
+ * result holds exactly the types that the
+ * {@link IncompleteSupertypesException} would have carried.
+ */
+public final class SupertypeQuery
+{
+    private final Collection<Type> supertypes;
+    private final boolean complete;
+
+    private SupertypeQuery(Collection<Type> supertypes, boolean complete) {
+        this.supertypes = Collections.unmodifiableCollection(supertypes);
+        this.complete = complete;
+    }
+
+    /**
+     * @param supertypes the supertypes; not copied, so they must not
+     *        be modified afterwards
+     */
+    public static SupertypeQuery complete(Collection<Type> supertypes) {
+        return new SupertypeQuery(supertypes, true);
+    }
+
+    /**
+     * @param supertypes the supertypes found, including the missing
+     *        ones; not copied, so they must not be modified afterwards
+     */
+    public static SupertypeQuery incomplete(Collection<Type> supertypes) {
+        return new SupertypeQuery(supertypes, false);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns an unmodifiable view of the supertypes, in the order
+     * they were found.
+     */
+    public Collection<Type> getSupertypes() {
+        return supertypes;
+    }
+
+    public boolean includes(Type type) {
+        return supertypes.contains(type);
+    }
+}
@@ -1,12 +1,16 @@
 package org.clyze.jphantom.hier;
 
 import java.util.*;
+import java.util.concurrent.*;
 import org.objectweb.asm.Type;
 
 public class SystemClassHierarchy extends AbstractClassHierarchy
 {
-    private static final Map<ClassLoader,SystemClassHierarchy> systemHier = 
-        new HashMap<>();
+    // Key of the bootstrap class loader, which is represented by null
+    private static final Object BOOTSTRAP = new Object();
+
+    private static final ConcurrentMap<Object,SystemClassHierarchy> systemHier =
+        new ConcurrentHashMap<>();
 
     private SystemClassHierarchy(ClassLoader loader) {
         this.loader = loader;
@@ -16,10 +20,17 @@ public class SystemClassHierarchy extends AbstractClassHierarchy
 
     public static SystemClassHierarchy getInstance(ClassLoader loader)
     {
-        if (!systemHier.containsKey(loader))
-            systemHier.put(loader, new SystemClassHierarchy(loader));
+        Object key = (loader == null) ? BOOTSTRAP : loader;
+        SystemClassHierarchy hier = systemHier.get(key);
+
+        if (hier == null) {
+            SystemClassHierarchy fresh = new SystemClassHierarchy(loader);
+            hier = systemHier.putIfAbsent(key, fresh);
 
-        return systemHier.get(loader);
+            if (hier == null)
+                hier = fresh;
+        }
+        return hier;
     }
 
     @Override
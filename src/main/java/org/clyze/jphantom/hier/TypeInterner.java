@@ -0,0 +1,71 @@
+package org.clyze.jphantom.hier;
+
+import java.util.*;
+import org.objectweb.asm.Type;
+
+/**
+ * Assigns dense integer ids to types, in the order they are first
+ * interned, and maps them back to their types.
+ *
+ * This class is not thread-safe.
+ */
+public class TypeInterner
+{
+    private final Map<Type,Integer> ids = new HashMap<>();
+    private Type[] types = new Type[64];
+    private int size = 0;
+
+    public TypeInterner() {}
+
+    /**
+     * Creates a copy of another interner, that assigns the same ids.
+     */
+    public TypeInterner(TypeInterner other)
+    {
+        this.ids.putAll(other.ids);
+        this.types = Arrays.copyOf(other.types, Math.max(other.size, 1));
+        this.size = other.size;
+    }
+
+    /**
+     * Returns the id of a type, assigning it a new one if it has not
+     * been interned yet.
+     */
+    public int intern(Type type)
+    {
+        Integer id = ids.get(type);
+
+        if (id != null)
+            return id;
+
+        if (size == types.length)
+            types = Arrays.copyOf(types, 2 * size);
+
+        types[size] = type;
+        ids.put(type, size);
+
+        return size++;
+    }
+
+    /**
+     * Returns the id of a type, or {@code -1} if it has not been
+     * interned.
+     */
+    public int idOf(Type type)
+    {
+        Integer id = ids.get(type);
+        return id == null ? -1 : id;
+    }
+
+    public Type typeOf(int id)
+    {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("" + id);
+
+        return types[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -26,12 +26,24 @@ public abstract class AbstractSnapshot extends ForwardingClassHierarchy
     {
         checkedContainedObject(type);
 
+        SupertypeQuery query = querySupertypes(type);
+
+        if (query.includes(supertype))
+            return true;
+
+        if (!query.isComplete())
+            throw new IncompleteSupertypesException();
+
+        return false;
+    }
+
+    @Override
+    public SupertypeQuery querySupertypes(Type obj)
+    {
         try {
-            return getAllSupertypes(type).contains(supertype);
+            return SupertypeQuery.complete(getAllSupertypes(obj));
         } catch (IncompleteSupertypesException exc) {
-            if (exc.getSupertypes().contains(supertype))
-                return true;
-            throw new IncompleteSupertypesException();
+            return SupertypeQuery.incomplete(exc.getSupertypes());
         }
     }
 }
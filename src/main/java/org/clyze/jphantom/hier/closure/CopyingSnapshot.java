@@ -2,35 +2,133 @@ package org.clyze.jphantom.hier.closure;
 
 import java.util.*;
 import org.clyze.jphantom.hier.*;
-import org.clyze.jphantom.hier.graph.*;
-import org.clyze.jphantom.util.BootstrapClassLoader;
 import org.objectweb.asm.Type;
-import org.jgrapht.DirectedGraph;
-import org.jgrapht.graph.SimpleDirectedGraph;
-import org.jgrapht.alg.TransitiveClosure;
-import static org.jgrapht.Graphs.*;
 
-/** @author George Balatsouras */
-public class CopyingSnapshot extends PseudoSnapshot
+/**
+ * A snapshot of a class hierarchy that precomputes its transitive
+ * closure.
+ *
+ * Types (including missing supertypes) are numbered densely, so that
+ * every type comes after all of its supertypes. The supertypes of each
+ * type are then stored as a bitset over these numbers, computed as the
+ * union of the bitsets of its direct supertypes. Since no supertype can
+ * have a greater number, the bitset of a type needs only as many words
+ * as its own number requires.
+ *
+ * The supertypes of a type never include the type itself.
+ *
+ * Snapshots are immutable and thus thread-safe.
+ *
+ * @author George Balatsouras
+ */
+public class CopyingSnapshot extends AbstractSnapshot
 {
-    private final DirectedGraph<Node,Edge> graph;
-    private final SimpleDirectedGraph<Node,Edge> closedGraph =
-            new SimpleDirectedGraph<>(Edge.factory);
+    private final Map<Type,Integer> ids = new HashMap<>();
+    private final Type[] types;
+    private final long[][] supertypes;
+    private final BitSet incomplete;
 
     public CopyingSnapshot(ClassHierarchy other)
     {
-        // Make defensive copy
-        super(new IncrementalClassHierarchy(other));
+        super(importMissing(other));
 
-        // Try to add missing types
-        new Importer(hierarchy, BootstrapClassLoader.v()).execute();
+        // Number types in topological order
+        List<Type> order = new ArrayList<>();
+        Set<Type> visiting = new HashSet<>();
+
+        for (Type t : hierarchy)
+            number(t, order, visiting);
+
+        int n = order.size();
 
-        // Create graph representation
-        this.graph = new GraphConverter(hierarchy).convert();
+        this.types = order.toArray(new Type[n]);
+        this.supertypes = new long[n][];
+        this.incomplete = new BitSet(n);
 
         // Compute the transitive closure of the class hierarchy
-        addGraph(closedGraph, graph);
-        TransitiveClosure.INSTANCE.closeSimpleDirectedGraph(closedGraph);
+        for (int id = 0; id < n; id++)
+        {
+            Type t = types[id];
+            long[] bits = new long[(id >> 6) + 1];
+
+            if (hierarchy.contains(t))
+            {
+                Type sc = hierarchy.getSuperclass(t);
+
+                if (sc != null)
+                    addSupertype(id, bits, sc);
+
+                for (Type iface : hierarchy.getInterfaces(t))
+                    addSupertype(id, bits, iface);
+            }
+            supertypes[id] = bits;
+        }
+    }
+
+    // Makes a frozen copy that also contains whatever missing types
+    // the library can provide, so that this snapshot never changes
+    // after construction and can be shared by many threads
+    private static ClassHierarchy importMissing(ClassHierarchy other)
+    {
+        CompactClassHierarchy copy = new CompactClassHierarchy(other);
+
+        // Try to add missing types
+        new Importer(copy, LibraryClassHierarchy.getInstance()).execute();
+
+        return copy.freeze();
+    }
+
+    // Depth-first traversal that numbers each type after its supertypes
+    private void number(Type t, List<Type> order, Set<Type> visiting)
+    {
+        if (ids.containsKey(t))
+            return;
+
+        if (!visiting.add(t))
+            throw new CyclicHierarchyException(t.getClassName());
+
+        if (hierarchy.contains(t))
+        {
+            Type sc = hierarchy.getSuperclass(t);
+
+            if (sc != null)
+                number(sc, order, visiting);
+
+            for (Type iface : hierarchy.getInterfaces(t))
+                number(iface, order, visiting);
+        }
+
+        visiting.remove(t);
+        ids.put(t, order.size());
+        order.add(t);
+    }
+
+    private void addSupertype(int id, long[] bits, Type direct)
+    {
+        int sid = ids.get(direct);
+        long[] indirect = supertypes[sid];
+
+        bits[sid >> 6] |= 1L << sid;
+
+        for (int i = 0; i < indirect.length; i++)
+            bits[i] |= indirect[i];
+
+        if (!hierarchy.contains(direct) || incomplete.get(sid))
+            incomplete.set(id);
+    }
+
+    private int idOf(Type obj) {
+        return ids.get(checkedContainedObject(obj));
+    }
+
+    private boolean hasSupertype(int id, Type supertype)
+    {
+        Integer sid = ids.get(supertype);
+
+        if (sid == null || sid >= id)
+            return false;
+
+        return (supertypes[id][sid >> 6] & (1L << sid)) != 0;
     }
 
     @Override
@@ -43,21 +141,176 @@ public class CopyingSnapshot extends PseudoSnapshot
         throw new UnsupportedOperationException();
     }
 
+    //////////////// Transitive Computations ////////////////
+
+    @Override
+    public List<Type> getAllSuperclasses(Type obj)
+        throws IncompleteSupertypesException
+    {
+        checkedContainedObject(obj);
+        List<Type> superclasses = new ArrayList<>();
+
+        while ((obj = hierarchy.getSuperclass(obj)) != null) {
+            superclasses.add(obj);
+
+            if (!hierarchy.contains(obj))
+                throw new IncompleteSupertypesException(superclasses);
+        }
+
+        return superclasses;
+    }
+
+    @Override
+    public Set<Type> getAllInterfaces(Type obj)
+        throws IncompleteSupertypesException
+    {
+        int id = idOf(obj);
+        long[] bits = supertypes[id].clone();
+
+        // Clear the superclasses
+        for (Type t = hierarchy.getSuperclass(obj);
+             t != null; t = hierarchy.contains(t) ? hierarchy.getSuperclass(t) : null)
+        {
+            int sid = ids.get(t);
+            bits[sid >> 6] &= ~(1L << sid);
+        }
+
+        Set<Type> interfaces = new SupertypeSet(bits);
+
+        if (incomplete.get(id))
+            throw new IncompleteSupertypesException(interfaces);
+
+        return interfaces;
+    }
+
     @Override
     public Set<Type> getAllSupertypes(Type obj)
         throws IncompleteSupertypesException
     {
-        Set<Type> supertypes = new HashSet<>();
-        
-        for (Node n : successorListOf(closedGraph, Node.get(obj)))
-            supertypes.add(n.asType());
+        int id = idOf(obj);
+        Set<Type> all = new SupertypeSet(supertypes[id]);
+
+        if (incomplete.get(id))
+            throw new IncompleteSupertypesException(all);
 
-        for (Type s : supertypes)
-            if (!hierarchy.contains(s))
-                throw new IncompleteSupertypesException(supertypes);
+        return all;
+    }
+
+    @Override
+    public SupertypeQuery querySupertypes(Type obj)
+    {
+        int id = idOf(obj);
+        Set<Type> all = new SupertypeSet(supertypes[id]);
 
-        return supertypes;
+        return incomplete.get(id) ?
+            SupertypeQuery.incomplete(all) :
+            SupertypeQuery.complete(all);
     }
 
-    // TODO: extends AbstactSnapshot, implement remaining methods
+    @Override
+    public boolean isStrictSubtypeOf(Type type, Type supertype)
+        throws IncompleteSupertypesException
+    {
+        int id = idOf(type);
+
+        if (hasSupertype(id, supertype))
+            return true;
+
+        if (incomplete.get(id))
+            throw new IncompleteSupertypesException();
+
+        return false;
+    }
+
+    @Override
+    public Type firstCommonSuperclass(Type a, Type b)
+        throws IncompleteSupertypesException
+    {
+        checkedContainedObject(a);
+        int bid = idOf(b);
+
+        // The first superclass of a (inclusive) that is also a
+        // superclass of b (inclusive). The bit test rules out most
+        // candidates before the superclass chain of b is walked.
+
+        for (Type c = a; c != null; c = hierarchy.getSuperclass(c))
+        {
+            if (c.equals(b) || (hasSupertype(bid, c) && isSuperclassOf(c, b)))
+                return c;
+
+            if (!hierarchy.contains(c))
+                throw new IncompleteSupertypesException();
+        }
+
+        for (Type c = b; c != null; c = hierarchy.getSuperclass(c))
+            if (!hierarchy.contains(c))
+                throw new IncompleteSupertypesException();
+
+        return null;
+    }
+
+    private boolean isSuperclassOf(Type superclass, Type obj)
+    {
+        while (hierarchy.contains(obj) && (obj = hierarchy.getSuperclass(obj)) != null)
+            if (obj.equals(superclass))
+                return true;
+
+        return false;
+    }
+
+    // An unmodifiable view of a supertype bitset. It iterates in the
+    // order of a hash set of the same types, as the snapshot did when
+    // it returned hash sets; the solvers pick projections in this order.
+    private class SupertypeSet extends AbstractSet<Type>
+    {
+        private final long[] bits;
+        private final int size;
+        private Set<Type> ordered;
+
+        SupertypeSet(long[] bits)
+        {
+            int size = 0;
+
+            for (long word : bits)
+                size += Long.bitCount(word);
+
+            this.bits = bits;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            if (!(o instanceof Type))
+                return false;
+
+            Integer id = ids.get(o);
+
+            if (id == null || (id >> 6) >= bits.length)
+                return false;
+
+            return (bits[id >> 6] & (1L << id)) != 0;
+        }
+
+        @Override
+        public Iterator<Type> iterator()
+        {
+            if (ordered == null)
+            {
+                Set<Type> set = new HashSet<>();
+
+                for (int i = 0; i < bits.length; i++)
+                    for (long word = bits[i]; word != 0; word &= word - 1)
+                        set.add(types[(i << 6) + Long.numberOfTrailingZeros(word)]);
+
+                ordered = Collections.unmodifiableSet(set);
+            }
+            return ordered.iterator();
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package org.clyze.jphantom.hier.closure;
+
+import java.util.*;
+import org.clyze.jphantom.hier.*;
+import org.objectweb.asm.Type;
+
+/**
+ * A pseudo-snapshot that caches the superclasses and supertypes of
+ * each type it is queried for, while the underlying hierarchy keeps
+ * growing.
+ *
+ * Types are never removed from a hierarchy, nor are their direct
+ * supertypes ever changed, so a complete result stays valid forever.
+ * An incomplete result only changes when one of its missing types is
+ * added; it is therefore recorded along with these types, and is
+ * recomputed on its next lookup once any of them is present.
+ *
+ * Results are unmodifiable. This class is not thread-safe.
+ */
+public class MemoizingSnapshot extends PseudoSnapshot
+{
+    private final Map<Type,Entry> superclasses = new HashMap<>();
+    private final Map<Type,Entry> supertypes = new HashMap<>();
+
+    public MemoizingSnapshot(ClassHierarchy hierarchy) {
+        super(hierarchy);
+    }
+
+    @Override
+    public List<Type> getAllSuperclasses(Type obj) throws IncompleteSupertypesException
+    {
+        Entry entry = superclasses.get(obj);
+
+        if (entry == null || !entry.isValid())
+        {
+            try {
+                List<Type> result = super.getAllSuperclasses(obj);
+                entry = new Entry(Collections.unmodifiableList(result));
+            } catch (IncompleteSupertypesException exc) {
+                entry = new Entry(exc.getSupertypes());
+            }
+            superclasses.put(obj, entry);
+        }
+
+        if (entry.incomplete())
+            throw new IncompleteSupertypesException(entry.types);
+
+        return (List<Type>) entry.types;
+    }
+
+    @Override
+    public Set<Type> getAllInterfaces(Type obj) throws IncompleteSupertypesException
+    {
+        checkedContainedObject(obj);
+        List<Type> superclasses;
+
+        try {
+            superclasses = getAllSuperclasses(obj);
+        } catch (IncompleteSupertypesException exc) {
+            superclasses = exc.getSupertypes();
+        }
+
+        try {
+            Set<Type> interfaces = new HashSet<>(getAllSupertypes(obj));
+            interfaces.removeAll(superclasses);
+            return Collections.unmodifiableSet(interfaces);
+        } catch (IncompleteSupertypesException exc) {
+            exc.getSupertypes().removeAll(superclasses);
+            throw exc;
+        }
+    }
+
+    @Override
+    public Set<Type> getAllSupertypes(Type obj) throws IncompleteSupertypesException
+    {
+        Entry entry = supertypesOf(obj);
+
+        if (entry.incomplete())
+            throw new IncompleteSupertypesException(entry.types);
+
+        return (Set<Type>) entry.types;
+    }
+
+    @Override
+    public SupertypeQuery querySupertypes(Type obj)
+    {
+        Entry entry = supertypesOf(obj);
+
+        return entry.incomplete() ?
+            SupertypeQuery.incomplete(entry.types) :
+            SupertypeQuery.complete(entry.types);
+    }
+
+    private Entry supertypesOf(Type obj)
+    {
+        Entry entry = supertypes.get(obj);
+
+        if (entry == null || !entry.isValid())
+        {
+            Set<Type> result = new HashSet<>();
+
+            entry = collectSupertypes(obj, result) ?
+                new Entry(Collections.unmodifiableSet(result)) :
+                new Entry(new ArrayList<>(result));
+
+            supertypes.put(obj, entry);
+        }
+        return entry;
+    }
+
+    private class Entry
+    {
+        // The supertypes found: a set if they are complete, else a
+        // list in the (hash) iteration order of the collected set
+        final Collection<Type> types;
+
+        // The types that were missing when this entry was created
+        final List<Type> missing = new ArrayList<>();
+
+        Entry(Collection<Type> types)
+        {
+            this.types = types;
+
+            for (Type t : types)
+                if (!contains(t))
+                    missing.add(t);
+        }
+
+        boolean incomplete() {
+            return !missing.isEmpty();
+        }
+
+        boolean isValid()
+        {
+            for (Type t : missing)
+                if (contains(t))
+                    return false;
+
+            return true;
+        }
+    }
+}
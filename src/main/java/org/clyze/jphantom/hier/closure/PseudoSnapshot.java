@@ -61,8 +61,29 @@ public class PseudoSnapshot extends AbstractSnapshot
     @Override
     public Set<Type> getAllSupertypes(Type obj) throws IncompleteSupertypesException
     {
-        checkedContainedObject(obj);
         Set<Type> supertypes = new HashSet<>();
+
+        if (!collectSupertypes(obj, supertypes))
+            throw new IncompleteSupertypesException(supertypes);
+
+        return supertypes;
+    }
+
+    @Override
+    public SupertypeQuery querySupertypes(Type obj)
+    {
+        Set<Type> supertypes = new HashSet<>();
+
+        return collectSupertypes(obj, supertypes) ?
+            SupertypeQuery.complete(supertypes) :
+            SupertypeQuery.incomplete(supertypes);
+    }
+
+    // Adds every supertype of an object type (including itself) to the
+    // given set, and returns false if some of them are missing
+    protected final boolean collectSupertypes(Type obj, Set<Type> supertypes)
+    {
+        checkedContainedObject(obj);
         Queue<Type> queue = new LinkedList<>();
         boolean incomplete = false;
         
@@ -86,11 +107,7 @@ public class PseudoSnapshot extends AbstractSnapshot
 
         } while((obj = getSuperclass(obj)) != null);
 
-
-        if (incomplete)
-            throw new IncompleteSupertypesException(supertypes);
-
-        return supertypes;
+        return !incomplete;
     }
 
     @Override
@@ -0,0 +1,69 @@
+package org.clyze.jphantom.hier.closure;
+
+import java.util.*;
+import org.clyze.jphantom.hier.*;
+import org.objectweb.asm.Type;
+
+/**
+ * Tells whether a type is resolved, i.e. whether it is known along
+ * with all of its supertypes, either in a class hierarchy or in the
+ * library. A resolved type can neither be a phantom type nor have a
+ * phantom supertype. Primitive types are always resolved, while array
+ * types are resolved if their element types are.
+ *
+ * Positive results are cached, so the hierarchy may grow between
+ * calls but no type may ever be removed from it.
+ */
+public class ResolvedTypes
+{
+    private final ClassHierarchy hierarchy;
+    private final ClassHierarchy library;
+    private final PseudoSnapshot snapshot;
+    private final PseudoSnapshot librarySnapshot;
+    private final Set<Type> resolved = new HashSet<>();
+
+    /**
+     * @param library the library hierarchy, consulted for types that
+     *        the given hierarchy does not contain; may be {@code null}
+     */
+    public ResolvedTypes(ClassHierarchy hierarchy, ClassHierarchy library)
+    {
+        this.hierarchy = hierarchy;
+        this.library = library;
+        this.snapshot = new PseudoSnapshot(hierarchy);
+        this.librarySnapshot = (library == null) ? null : new PseudoSnapshot(library);
+    }
+
+    public boolean isResolved(Type type)
+    {
+        switch (type.getSort()) {
+        case Type.OBJECT:
+            break;
+        case Type.ARRAY:
+            return isResolved(type.getElementType());
+        case Type.METHOD:
+            throw new IllegalArgumentException(type.toString());
+        default:
+            return true;
+        }
+
+        if (resolved.contains(type))
+            return true;
+
+        SupertypeQuery supertypes;
+
+        if (hierarchy.contains(type))
+            supertypes = snapshot.querySupertypes(type);
+        else if (library != null && library.contains(type))
+            supertypes = librarySnapshot.querySupertypes(type);
+        else
+            return false;
+
+        if (!supertypes.isComplete())
+            return false;
+
+        // A resolved type stays resolved, as the hierarchy grows
+        resolved.add(type);
+        return true;
+    }
+}
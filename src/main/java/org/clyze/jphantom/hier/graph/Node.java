@@ -1,11 +1,12 @@
 package org.clyze.jphantom.hier.graph;
 
-import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.objectweb.asm.Type;
 
 public class Node
 {
-    private static final Map<Type,Node> cache = new HashMap<>();
+    private static final ConcurrentMap<Type,Node> cache = new ConcurrentHashMap<>();
 
     private final Type type;
 
@@ -19,10 +20,16 @@ public class Node
 
     public static Node get(Type t)
     {
-        if (!cache.containsKey(t))
-            cache.put(t, new Node(t));
+        Node node = cache.get(t);
 
-        return cache.get(t);
+        if (node == null) {
+            Node fresh = new Node(t);
+            node = cache.putIfAbsent(t, fresh);
+
+            if (node == null)
+                node = fresh;
+        }
+        return node;
     }
 
     @Override
@@ -0,0 +1,34 @@
+package org.clyze.jphantom.jar;
+
+import java.io.IOException;
+import java.util.Set;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Provides the classes of the input jar to the stages that need them,
+ * without dictating whether they are kept in memory.
+ */
+public interface ClassNodeProvider
+{
+    /**
+     * Returns the types of the input jar, in jar entry order.
+     */
+    Set<Type> getTypes();
+
+    /**
+     * Returns the class node of an input type. Callers should not
+     * hold on to the node longer than necessary, since it may be
+     * created anew on every call.
+     */
+    ClassNode getNode(Type type) throws IOException;
+
+    /**
+     * Replays an input type to the given visitor.
+     *
+     * @param flags the {@link org.objectweb.asm.ClassReader} flags
+     *        to use, if the type has to be read again
+     */
+    void accept(Type type, ClassVisitor visitor, int flags) throws IOException;
+}
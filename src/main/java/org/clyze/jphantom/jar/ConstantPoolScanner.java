@@ -0,0 +1,209 @@
+package org.clyze.jphantom.jar;
+
+import java.util.*;
+
+/**
+ * Collects the types referenced by a class file, by reading just its
+ * constant pool.
+ *
+ * Every type that a class mentions, whether in its code, its member
+ * declarations, its local variable tables or its annotations, is
+ * either the name of a {@code CONSTANT_Class} entry or occurs inside
+ * a descriptor or signature stored as a {@code CONSTANT_Utf8} entry.
+ * Since string constants are {@code CONSTANT_Utf8} entries as well,
+ * the result may also contain bogus names; it is a superset of the
+ * referenced types, which is what callers that decide whether a class
+ * can be skipped need.
+ */
+public class ConstantPoolScanner
+{
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private ConstantPoolScanner() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the internal names of the object types referenced by
+     * the given class file, including array element types.
+     *
+     * @throws IllegalArgumentException if the constant pool is malformed
+     */
+    public static Set<String> referencedTypes(byte[] b)
+    {
+        int count = readUnsignedShort(b, 8);
+        int[] offsets = new int[count];
+        boolean[] classNames = new boolean[count];
+
+        // Locate every entry
+
+        int pos = 10;
+
+        for (int i = 1; i < count; i++)
+        {
+            offsets[i] = pos + 1;
+
+            switch (b[pos]) {
+            case UTF8:
+                pos += 3 + readUnsignedShort(b, pos + 1);
+                break;
+            case CLASS:
+                classNames[readUnsignedShort(b, pos + 1)] = true;
+                pos += 3;
+                break;
+            case STRING:
+            case METHOD_TYPE:
+            case MODULE:
+            case PACKAGE:
+                pos += 3;
+                break;
+            case METHOD_HANDLE:
+                pos += 4;
+                break;
+            case INTEGER:
+            case FLOAT:
+            case FIELDREF:
+            case METHODREF:
+            case INTERFACE_METHODREF:
+            case NAME_AND_TYPE:
+            case DYNAMIC:
+            case INVOKE_DYNAMIC:
+                pos += 5;
+                break;
+            case LONG:
+            case DOUBLE:
+                pos += 9;
+                i++; // takes two slots
+                break;
+            default:
+                throw new IllegalArgumentException("Bad constant pool tag: " + b[pos]);
+            }
+        }
+
+        // Extract type names
+
+        Set<String> types = new HashSet<>();
+
+        for (int i = 1; i < count; i++)
+        {
+            int offset = offsets[i];
+
+            if (offset == 0 || b[offset - 1] != UTF8)
+                continue;
+
+            String utf = readUtf(b, offset);
+
+            if (classNames[i] && !utf.startsWith("["))
+                types.add(utf);
+            else if (isDescriptor(utf))
+                scanDescriptor(utf, types);
+        }
+        return types;
+    }
+
+    // Filters out most other constants, such as attribute names
+    // (e.g., "LineNumberTable") and string literals
+    private static boolean isDescriptor(String utf)
+    {
+        if (utf.isEmpty())
+            return false;
+
+        switch (utf.charAt(0)) {
+        case '(':
+        case '<':
+            return true;
+        case '[':
+            return utf.length() > 1;
+        case 'L':
+            return utf.endsWith(";");
+        default:
+            return false;
+        }
+    }
+
+    // Adds the object types that occur in a descriptor or signature
+    private static void scanDescriptor(String desc, Set<String> types)
+    {
+        int n = desc.length();
+
+        for (int i = 0; i < n; i++)
+        {
+            char c = desc.charAt(i);
+
+            if (c == 'T') {
+                // Type variable; skip its name
+                int end = desc.indexOf(';', i);
+
+                if (end < 0)
+                    return;
+
+                i = end;
+            }
+            else if (c == 'L') {
+                int end = i + 1;
+
+                while (end < n && desc.charAt(end) != ';' && desc.charAt(end) != '<')
+                    end++;
+
+                String name = desc.substring(i + 1, end);
+                int colon = name.indexOf(':');
+
+                if (colon >= 0) {
+                    // Formal type parameter named "L..."; resume at its bound
+                    i += colon;
+                    continue;
+                }
+
+                if (!name.isEmpty())
+                    types.add(name);
+
+                i = end;
+            }
+        }
+    }
+
+    private static int readUnsignedShort(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
+    // Decodes a modified UTF-8 constant, whose length is at offset
+    private static String readUtf(byte[] b, int offset)
+    {
+        int length = readUnsignedShort(b, offset);
+        int pos = offset + 2;
+        int end = pos + length;
+        char[] chars = new char[length];
+        int n = 0;
+
+        while (pos < end)
+        {
+            int c = b[pos++] & 0xFF;
+
+            if ((c & 0x80) == 0)
+                chars[n++] = (char) c;
+            else if ((c & 0xE0) == 0xC0)
+                chars[n++] = (char) (((c & 0x1F) << 6) | (b[pos++] & 0x3F));
+            else
+                chars[n++] = (char) (((c & 0x0F) << 12) |
+                                     ((b[pos++] & 0x3F) << 6) |
+                                     (b[pos++] & 0x3F));
+        }
+        return new String(chars, 0, n);
+    }
+}
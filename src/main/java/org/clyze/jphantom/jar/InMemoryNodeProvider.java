@@ -0,0 +1,44 @@
+package org.clyze.jphantom.jar;
+
+import java.util.*;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Serves the classes of the input jar from a map of class nodes that
+ * have all been parsed in advance.
+ */
+public class InMemoryNodeProvider implements ClassNodeProvider
+{
+    private final Map<Type, ClassNode> nodes;
+
+    public InMemoryNodeProvider(Map<Type, ClassNode> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public Set<Type> getTypes() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    @Override
+    public ClassNode getNode(Type type) {
+        return checkedNode(type);
+    }
+
+    @Override
+    public void accept(Type type, ClassVisitor visitor, int flags) {
+        checkedNode(type).accept(visitor);
+    }
+
+    private ClassNode checkedNode(Type type)
+    {
+        ClassNode node = nodes.get(type);
+
+        if (node == null)
+            throw new IllegalArgumentException(type + " is not an input type");
+
+        return node;
+    }
+}
@@ -0,0 +1,213 @@
+package org.clyze.jphantom.jar;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.*;
+import com.google.common.io.ByteStreams;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the class entries of a jar, inflating and parsing each one
+ * exactly once.
+ *
+ * The resulting class nodes are meant to be shared by every
+ * subsequent stage (hierarchy construction, member recording,
+ * phantom extraction and constraint extraction), so that none of
+ * them has to go back to the jar.
+ *
+ * Parsing is CPU-bound and entries are independent of each other,
+ * so they may be parsed in parallel by a fork-join pool. The
+ * resulting map is the same regardless of the number of threads.
+ *
+ * While each entry is in memory, its constant pool is also scanned
+ * for referenced types (see {@link TypeReferenceIndex}).
+ */
+public class JarLoader
+{
+    private final Path jar;
+    private final int threads;
+    private final Map<Type, String> entryNames = new LinkedHashMap<>();
+    private final Map<Type, Set<String>> references = new LinkedHashMap<>();
+
+    private final static Logger logger =
+        LoggerFactory.getLogger(JarLoader.class);
+
+    public JarLoader(Path jar, int threads)
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("" + threads);
+
+        this.jar = jar;
+        this.threads = threads;
+    }
+
+    public JarLoader(Path jar) {
+        this(jar, 1);
+    }
+
+    /**
+     * Parses every class entry of the jar.
+     *
+     * @return the class nodes of the jar, keyed by their types and
+     *         iterated in jar entry order
+     * @throws IOException if the jar cannot be read
+     */
+    public Map<Type, ClassNode> load() throws IOException {
+        return load(0);
+    }
+
+    /**
+     * Parses every class entry of the jar, using the given
+     * {@link ClassReader} flags (e.g., {@code SKIP_CODE} when only
+     * the declarations of each class are needed).
+     *
+     * @return the class nodes of the jar, keyed by their types and
+     *         iterated in jar entry order
+     * @throws IOException if the jar cannot be read
+     */
+    public Map<Type, ClassNode> load(int flags) throws IOException
+    {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            List<JarEntry> entries = new ArrayList<>();
+
+            for (Enumeration<JarEntry> e = file.entries(); e.hasMoreElements();)
+            {
+                JarEntry entry = e.nextElement();
+
+                /* Skip directories */
+                if (entry.isDirectory())
+                    continue;
+
+                /* Skip non-class files */
+                if (!entry.getName().endsWith(".class"))
+                    continue;
+
+                entries.add(entry);
+            }
+
+            List<Parsed> parsed = (threads > 1) ?
+                parseInParallel(file, entries, flags) :
+                parseSequentially(file, entries, flags);
+
+            // Merge in jar entry order
+            Map<Type, ClassNode> nodes = new LinkedHashMap<>();
+
+            entryNames.clear();
+            references.clear();
+
+            for (int i = 0; i < parsed.size(); i++)
+            {
+                Type type = Type.getObjectType(parsed.get(i).node.name);
+
+                nodes.put(type, parsed.get(i).node);
+                entryNames.put(type, entries.get(i).getName());
+                references.put(type, parsed.get(i).references);
+            }
+
+            return nodes;
+        }
+    }
+
+    /**
+     * Returns the jar entry of each type, as found by the last
+     * {@link #load(int)}, in jar entry order.
+     */
+    public Map<Type, String> getEntryNames() {
+        return Collections.unmodifiableMap(entryNames);
+    }
+
+    /**
+     * Returns the types referenced by each class, as found by the
+     * last {@link #load(int)}.
+     */
+    public TypeReferenceIndex getReferenceIndex() {
+        return new TypeReferenceIndex(references);
+    }
+
+    private List<Parsed> parseSequentially(JarFile file, List<JarEntry> entries, int flags)
+        throws IOException
+    {
+        List<Parsed> parsed = new ArrayList<>(entries.size());
+
+        for (JarEntry entry : entries)
+            parsed.add(new Parsed(file, entry, flags));
+
+        return parsed;
+    }
+
+    private List<Parsed> parseInParallel(
+        final JarFile file, List<JarEntry> entries, final int flags) throws IOException
+    {
+        List<Callable<Parsed>> tasks = new ArrayList<>(entries.size());
+
+        for (final JarEntry entry : entries)
+            tasks.add(new Callable<Parsed>() {
+                    @Override public Parsed call() throws IOException {
+                        return new Parsed(file, entry, flags);
+                    }
+                });
+
+        logger.debug("Parsing {} jar entries using {} threads", entries.size(), threads);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            List<Parsed> parsed = new ArrayList<>(entries.size());
+
+            for (Future<Parsed> future : pool.invokeAll(tasks))
+                parsed.add(future.get());
+
+            return parsed;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(jar.toString());
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static ClassNode parse(JarFile file, JarEntry entry, int flags) throws IOException
+    {
+        try (InputStream stream = file.getInputStream(entry)) {
+            ClassNode node = new ClassNode();
+            new ClassReader(stream).accept(node, flags);
+            return node;
+        }
+    }
+
+    private static class Parsed
+    {
+        final ClassNode node = new ClassNode();
+        final Set<String> references;
+
+        Parsed(JarFile file, JarEntry entry, int flags) throws IOException
+        {
+            logger.trace("Reading jar entry: {}", entry.getName());
+
+            byte[] bytes;
+
+            try (InputStream stream = file.getInputStream(entry)) {
+                bytes = ByteStreams.toByteArray(stream);
+            }
+
+            new ClassReader(bytes).accept(node, flags);
+            references = ConstantPoolScanner.referencedTypes(bytes);
+        }
+    }
+}
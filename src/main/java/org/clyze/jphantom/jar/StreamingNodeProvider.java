@@ -0,0 +1,66 @@
+package org.clyze.jphantom.jar;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.*;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Serves the classes of the input jar by reading their entries again
+ * on every request. No class node is retained, so that memory usage
+ * is bounded by the largest class, rather than by the whole jar.
+ */
+public class StreamingNodeProvider implements ClassNodeProvider, Closeable
+{
+    private final JarFile file;
+    private final Map<Type, String> entryNames;
+
+    /**
+     * @param jar the input jar
+     * @param entryNames the jar entry of each type, as returned by
+     *        {@link JarLoader#getEntryNames()}
+     */
+    public StreamingNodeProvider(Path jar, Map<Type, String> entryNames)
+        throws IOException
+    {
+        this.file = new JarFile(jar.toFile());
+        this.entryNames = new LinkedHashMap<>(entryNames);
+    }
+
+    @Override
+    public Set<Type> getTypes() {
+        return Collections.unmodifiableSet(entryNames.keySet());
+    }
+
+    @Override
+    public ClassNode getNode(Type type) throws IOException {
+        return JarLoader.parse(file, checkedEntry(type), 0);
+    }
+
+    @Override
+    public void accept(Type type, ClassVisitor visitor, int flags) throws IOException
+    {
+        try (InputStream stream = file.getInputStream(checkedEntry(type))) {
+            new ClassReader(stream).accept(visitor, flags);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private JarEntry checkedEntry(Type type)
+    {
+        String name = entryNames.get(type);
+
+        if (name == null)
+            throw new IllegalArgumentException(type + " is not an input type");
+
+        return file.getJarEntry(name);
+    }
+}
@@ -0,0 +1,103 @@
+package org.clyze.jphantom.jar;
+
+import java.util.*;
+import org.clyze.jphantom.hier.ClassHierarchy;
+import org.clyze.jphantom.hier.closure.ResolvedTypes;
+import org.objectweb.asm.Type;
+
+/**
+ * Records the types referenced by each input class, as found by a
+ * {@link ConstantPoolScanner}, along with the inverse relation.
+ *
+ * It is used to tell which classes cannot possibly involve phantom
+ * types, so that they can skip the more expensive stages.
+ */
+public class TypeReferenceIndex
+{
+    private final Map<Type, Set<Type>> references = new LinkedHashMap<>();
+    private final Map<Type, Set<Type>> referencingClasses = new HashMap<>();
+
+    public TypeReferenceIndex(Map<Type, Set<String>> references)
+    {
+        for (Map.Entry<Type, Set<String>> e : references.entrySet())
+        {
+            Type clazz = e.getKey();
+            Set<Type> types = new HashSet<>();
+
+            for (String name : e.getValue())
+            {
+                Type t = Type.getObjectType(name);
+
+                types.add(t);
+
+                if (!referencingClasses.containsKey(t))
+                    referencingClasses.put(t, new HashSet<Type>());
+
+                referencingClasses.get(t).add(clazz);
+            }
+            this.references.put(clazz, types);
+        }
+    }
+
+    public Set<Type> getClasses() {
+        return Collections.unmodifiableSet(references.keySet());
+    }
+
+    /**
+     * Returns the types referenced by an input class (including
+     * itself), or {@code null} if the class has not been scanned.
+     */
+    public Set<Type> getReferences(Type clazz)
+    {
+        Set<Type> types = references.get(clazz);
+        return types == null ? null : Collections.unmodifiableSet(types);
+    }
+
+    /**
+     * Returns the input classes that reference the given type.
+     */
+    public Set<Type> getReferencingClasses(Type type)
+    {
+        Set<Type> classes = referencingClasses.get(type);
+        return classes == null ?
+            Collections.<Type>emptySet() :
+            Collections.unmodifiableSet(classes);
+    }
+
+    /**
+     * Returns a checker that tells whether a class references only
+     * resolved types (see {@link ResolvedTypes}). Such classes cannot
+     * refer to phantom types.
+     *
+     * @param library the library hierarchy, consulted for types that
+     *        the given hierarchy does not contain (e.g., types that
+     *        only occur in signatures); may be {@code null}
+     */
+    public Checker checker(ClassHierarchy hierarchy, ClassHierarchy library) {
+        return new Checker(hierarchy, library);
+    }
+
+    public class Checker
+    {
+        private final ResolvedTypes resolved;
+
+        private Checker(ClassHierarchy hierarchy, ClassHierarchy library) {
+            this.resolved = new ResolvedTypes(hierarchy, library);
+        }
+
+        public boolean isResolved(Type clazz)
+        {
+            Set<Type> types = references.get(clazz);
+
+            // Not scanned
+            if (types == null)
+                return false;
+
+            for (Type t : types)
+                if (!resolved.isResolved(t))
+                    return false;
+
+            return true;
+        }
+    }
+}
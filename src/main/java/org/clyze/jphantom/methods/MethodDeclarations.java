@@ -19,7 +19,7 @@ public class MethodDeclarations implements Types
     public MethodDeclarations(ClassHierarchy hierarchy, MethodLookupTable mtable)
     {
         // Make defensive copies
-        this.hierarchy = new IncrementalClassHierarchy(hierarchy);
+        this.hierarchy = new CompactClassHierarchy(hierarchy);
         this.mtable = new MethodLookupTable(mtable);
 
         for (Type t : hierarchy)
@@ -8,15 +8,23 @@ import org.objectweb.asm.commons.Method;
 
 public class MethodSignature extends Signature
 {
-    private final Method m;
+    private static final Type[] NO_EXCEPTIONS = new Type[0];
+
+    // Signatures are created for every method of every class; they
+    // keep their name and descriptor directly, and share the list of
+    // exceptions when there are none
+    private final String name;
+    private final String desc;
     private final List<Type> exceptions;
 
     private MethodSignature(Builder builder)
     {
         super(builder.access);
-        this.m = new Method(builder.name, builder.desc);
-        this.exceptions = Collections.unmodifiableList(
-            Arrays.asList(builder.exceptions));
+        this.name = builder.name;
+        this.desc = builder.desc;
+        this.exceptions = (builder.exceptions.length == 0) ?
+            Collections.<Type>emptyList() :
+            Collections.unmodifiableList(Arrays.asList(builder.exceptions));
     }
 
     public static class Builder {
@@ -24,7 +32,7 @@ public class MethodSignature extends Signature
         private final String desc;
 
         private int access = 0;
-        private Type[] exceptions = new Type[0];
+        private Type[] exceptions = NO_EXCEPTIONS;
 
         public Builder(String name, String desc) {
             this.name = name;
@@ -38,7 +46,7 @@ public class MethodSignature extends Signature
 
         public Builder exceptions(String ... exceptions)
         {
-            if (exceptions != null) {
+            if (exceptions != null && exceptions.length > 0) {
                 this.exceptions = new Type[exceptions.length];
 
                 int i = 0;
@@ -47,7 +55,7 @@ public class MethodSignature extends Signature
                     this.exceptions[i++] = Type.getObjectType(exc);
 
             } else {
-                this.exceptions = new Type[0];
+                this.exceptions = NO_EXCEPTIONS;
             }
             return this;
         }
@@ -104,32 +112,38 @@ public class MethodSignature extends Signature
         return builder.toString();
     }
 
-    /* Delegated methods */
+    /* Same as the corresponding methods of asm's Method */
 
     @Override
-    public boolean equals(Object obj) {
-        return m.equals(obj);
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof Method))
+            return false;
+
+        Method other = (Method) obj;
+
+        return name.equals(other.getName()) && desc.equals(other.getDescriptor());
     }
 
     @Override
     public int hashCode() {
-        return m.hashCode();
+        return name.hashCode() ^ desc.hashCode();
     }
 
     public Type[] getArgumentTypes() {
-        return m.getArgumentTypes();
+        return Type.getArgumentTypes(desc);
     }
 
     public String getDescriptor() {
-        return m.getDescriptor();
+        return desc;
     }
 
     public String getName()  {
-        return m.getName();
+        return name;
     }
     
     public Type getReturnType() {
-        return m.getReturnType();
+        return Type.getReturnType(desc);
     }
 
     public static MethodSignature fromMethodNode(MethodNode node)
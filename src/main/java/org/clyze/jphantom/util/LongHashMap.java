@@ -0,0 +1,100 @@
+package org.clyze.jphantom.util;
+
+/**
+ * A hash map from primitive {@code long} keys to non-null values,
+ * using open addressing with linear probing. Neither lookups nor
+ * updates of existing keys allocate any objects.
+ *
+ * This class is not thread-safe.
+ */
+public class LongHashMap<V>
+{
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    public LongHashMap() {
+        this(8);
+    }
+
+    public LongHashMap(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Returns the slot of the key, or the empty slot where it belongs
+    private int slotOf(long key)
+    {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (values[slot] != null && keys[slot] != key)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[slotOf(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[slotOf(key)] != null;
+    }
+
+    /**
+     * Associates a non-null value with a key, and returns the value
+     * previously associated with it, if any.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (value == null)
+            throw new IllegalArgumentException("null value");
+
+        int slot = slotOf(key);
+        V prev = (V) values[slot];
+
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (prev == null && ++size > keys.length / 2)
+            rehash();
+
+        return prev;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash()
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[2 * oldKeys.length];
+        values = new Object[2 * oldValues.length];
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] == null)
+                continue;
+
+            int slot = slotOf(oldKeys[i]);
+
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
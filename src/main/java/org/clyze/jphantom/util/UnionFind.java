@@ -0,0 +1,89 @@
+package org.clyze.jphantom.util;
+
+import java.util.*;
+
+/**
+ * A disjoint-set forest, with union by size and path splitting.
+ * Elements are added implicitly, the first time they are seen.
+ *
+ * This class is not thread-safe.
+ */
+public class UnionFind<T>
+{
+    private final Map<T,T> parent = new LinkedHashMap<>();
+    private final Map<T,Integer> size = new HashMap<>();
+
+    /**
+     * Returns the representative of the set that contains the given
+     * element, adding it as a singleton set if it is not present.
+     */
+    public T find(T x)
+    {
+        T p = parent.get(x);
+
+        if (p == null) {
+            parent.put(x, x);
+            size.put(x, 1);
+            return x;
+        }
+
+        while (!p.equals(x)) {
+            T gp = parent.get(p);
+
+            parent.put(x, gp);
+            x = p;
+            p = parent.get(x);
+        }
+
+        return x;
+    }
+
+    /**
+     * Merges the sets that contain the given elements, and returns
+     * the representative of the merged set.
+     */
+    public T union(T x, T y)
+    {
+        T rx = find(x);
+        T ry = find(y);
+
+        if (rx.equals(ry))
+            return rx;
+
+        int sx = size.get(rx);
+        int sy = size.get(ry);
+
+        if (sx < sy) {
+            T tmp = rx; rx = ry; ry = tmp;
+        }
+
+        parent.put(ry, rx);
+        size.put(rx, sx + sy);
+        size.remove(ry);
+
+        return rx;
+    }
+
+    /**
+     * Returns the sets of this forest, keyed by their representative.
+     * Both the sets and their elements are ordered by the time their
+     * first element was seen.
+     */
+    public Map<T,Set<T>> sets()
+    {
+        Map<T,Set<T>> sets = new LinkedHashMap<>();
+
+        for (T x : new ArrayList<>(parent.keySet()))
+        {
+            T root = find(x);
+            Set<T> set = sets.get(root);
+
+            if (set == null)
+                sets.put(root, set = new LinkedHashSet<>());
+
+            set.add(x);
+        }
+
+        return sets;
+    }
+}